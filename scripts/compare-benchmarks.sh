@@ -0,0 +1,59 @@
+#!/bin/bash
+
+# Bookstore Application - Benchmark Comparison Script
+# Compares two JMH JSON result files (mvn -Pbenchmark test-compile exec:exec)
+# Usage: scripts/compare-benchmarks.sh baseline.json candidate.json [threshold-percent]
+
+set -e
+
+# Colors for output
+RED='\033[0;31m'
+GREEN='\033[0;32m'
+NC='\033[0m' # No Color
+
+if [ $# -lt 2 ]; then
+    echo "Usage: $0 baseline.json candidate.json [threshold-percent]"
+    exit 1
+fi
+
+BASELINE="$1"
+CANDIDATE="$2"
+THRESHOLD="${3:-10}"
+
+if ! command -v jq &> /dev/null; then
+    echo -e "${RED}jq is required but not installed${NC}"
+    exit 1
+fi
+
+# One line per benchmark, mode and parameter set: key<TAB>score<TAB>unit
+extract() {
+    jq -r '.[] | [(.benchmark + "[" + .mode + "](" + ((.params // {}) | to_entries | map(.key + "=" + .value) | join(",")) + ")"),
+                  .primaryMetric.score, .primaryMetric.scoreUnit] | @tsv' "$1" | sort
+}
+
+REGRESSIONS=0
+printf "%-90s %14s %14s %9s\n" "Benchmark" "Baseline" "Candidate" "Change"
+while IFS=$'\t' read -r KEY BASE NEW UNIT; do
+    CHANGE=$(awk -v b="$BASE" -v n="$NEW" 'BEGIN { printf "%.1f", (n - b) * 100 / b }')
+    # Time per operation should go down, throughput (ops/<unit>) should go up
+    if [[ "$UNIT" == ops/* ]]; then
+        SLOWDOWN=$(awk -v c="$CHANGE" 'BEGIN { print -c }')
+    else
+        SLOWDOWN=$CHANGE
+    fi
+    if awk -v c="$SLOWDOWN" -v t="$THRESHOLD" 'BEGIN { exit !(c > t) }'; then
+        COLOR=$RED
+        REGRESSIONS=$((REGRESSIONS + 1))
+    elif awk -v c="$SLOWDOWN" -v t="$THRESHOLD" 'BEGIN { exit !(c < -t) }'; then
+        COLOR=$GREEN
+    else
+        COLOR=$NC
+    fi
+    printf "%-90s %14.3f %14.3f ${COLOR}%8s%%${NC} %s\n" "$KEY" "$BASE" "$NEW" "$CHANGE" "$UNIT"
+done < <(join -t $'\t' <(extract "$BASELINE" | cut -f1,2) <(extract "$CANDIDATE"))
+
+if [ "$REGRESSIONS" -gt 0 ]; then
+    echo -e "${RED}${REGRESSIONS} benchmark(s) slower by more than ${THRESHOLD}%${NC}"
+    exit 2
+fi
+echo -e "${GREEN}No regressions above ${THRESHOLD}%${NC}"
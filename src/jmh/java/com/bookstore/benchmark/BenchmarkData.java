@@ -0,0 +1,54 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.model.Book;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic catalog shared by the benchmarks
+ */
+final class BenchmarkData {
+
+    static final String[] AUTHORS = {
+            "Jane Austen", "George Orwell", "Harper Lee", "F. Scott Fitzgerald", "J.R.R. Tolkien",
+            "Gabriel García Márquez", "Toni Morrison", "Haruki Murakami", "Chinua Achebe", "Virginia Woolf"
+    };
+
+    private static final String[] WORDS = {
+            "river", "shadow", "garden", "winter", "kingdom", "letters", "silent", "journey", "house",
+            "ocean", "stranger", "memory", "glass", "empire", "mountain", "secret", "fire", "island"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Books with ids 1..count (when withIds), titles and descriptions drawn from a small vocabulary
+     */
+    static List<Book> books(int count, boolean withIds) {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Book book = new Book(
+                    word(random) + " " + word(random) + " " + i,
+                    AUTHORS[random.nextInt(AUTHORS.length)],
+                    String.format("978-%010d", i),
+                    BigDecimal.valueOf(500 + random.nextInt(4500), 2));
+            if (withIds) {
+                book.setId((long) i);
+            }
+            book.setPublicationYear(1900 + random.nextInt(125));
+            book.setDescription("A story of the " + word(random) + " & the " + word(random) + " <" + i + ">");
+            book.setStockQuantity(random.nextInt(50));
+            books.add(book);
+        }
+        return books;
+    }
+
+    static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
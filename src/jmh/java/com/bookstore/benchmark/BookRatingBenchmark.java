@@ -0,0 +1,68 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book rating helpers at various rating counts. They read the stored aggregates,
+ * so the cost should not depend on ratingCount.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookRatingBenchmark {
+
+    @Param({"0", "10", "1000", "100000"})
+    private int ratingCount;
+
+    private Book book;
+
+    @Setup
+    public void setUp() {
+        book = new Book("Benchmark", "Author", "BENCH-1", new BigDecimal("9.99"));
+        Random random = new Random(42);
+        int[] histogram = new int[5];
+        long sum = 0;
+        for (int i = 0; i < ratingCount; i++) {
+            int value = 1 + random.nextInt(5);
+            histogram[value - 1]++;
+            sum += value;
+        }
+        // The aggregates are only ever written by the database, so set them directly
+        ReflectionTestUtils.setField(book, "ratingSum", sum);
+        ReflectionTestUtils.setField(book, "ratingCount", ratingCount);
+        ReflectionTestUtils.setField(book, "oneStarCount", histogram[0]);
+        ReflectionTestUtils.setField(book, "twoStarCount", histogram[1]);
+        ReflectionTestUtils.setField(book, "threeStarCount", histogram[2]);
+        ReflectionTestUtils.setField(book, "fourStarCount", histogram[3]);
+        ReflectionTestUtils.setField(book, "fiveStarCount", histogram[4]);
+    }
+
+    @Benchmark
+    public Double averageRating() {
+        return book.getAverageRating();
+    }
+
+    @Benchmark
+    public String starRating() {
+        return book.getStarRating();
+    }
+}
@@ -0,0 +1,148 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.search.FuzzyDictionary;
+import com.bookstore.search.TextAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the title words within two edits of a misspelled query word: the BK-tree
+ * of FuzzyDictionary against comparing the query with every word of every title.
+ * Titles are three words from a vocabulary of made-up words, common ones more
+ * often, so the dictionary grows far slower than the catalog as it does for real titles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FuzzySearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "an", "ber", "cal", "dor", "el", "fin", "gar", "hol", "is", "jun", "kel", "lor", "mar", "nor",
+            "o", "per", "quin", "ros", "sil", "tan", "ul", "ver", "wen", "yr", "zan", "ash", "bel", "cor"
+    };
+
+    private static final int VOCABULARY = 100_000;
+    private static final int MAX_EDITS = 2;
+
+    @Param({"100000", "1000000"})
+    private int titles;
+
+    private String[][] titleWords;
+    private FuzzyDictionary dictionary;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+
+        titleWords = new String[titles][];
+        dictionary = new FuzzyDictionary();
+        for (int i = 0; i < titles; i++) {
+            List<String> words = TextAnalyzer.tokenize(
+                    common(vocabulary, random) + " " + common(vocabulary, random) + " " + common(vocabulary, random));
+            titleWords[i] = words.toArray(new String[0]);
+            dictionary.put(i + 1, words);
+        }
+
+        // Vocabulary words of 6 letters or more with one or two random edits
+        queries = new String[64];
+        for (int i = 0; i < queries.length; i++) {
+            String word;
+            do {
+                word = titleWords[random.nextInt(titles)][random.nextInt(3)];
+            } while (word.length() < 6);
+            queries[i] = misspell(misspell(word, random), random);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> bkTree() {
+        return dictionary.within(nextQuery(), MAX_EDITS);
+    }
+
+    @Benchmark
+    public int scanTitles() {
+        String query = nextQuery();
+        int[] previous = new int[query.length() + 1];
+        int[] current = new int[query.length() + 1];
+        int matches = 0;
+        for (String[] words : titleWords) {
+            for (String word : words) {
+                if (distance(query, word, previous, current) <= MAX_EDITS) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private String nextQuery() {
+        return queries[next++ & (queries.length - 1)];
+    }
+
+    /**
+     * A vocabulary word, the low ranks far more likely than the high ones
+     */
+    private static String common(String[] vocabulary, Random random) {
+        double skew = random.nextDouble();
+        return vocabulary[(int) (skew * skew * skew * vocabulary.length)];
+    }
+
+    private static String misspell(String word, Random random) {
+        int at = random.nextInt(word.length());
+        char letter = (char) ('a' + random.nextInt(26));
+        int edit = random.nextInt(3);
+        if (edit == 0) {
+            return word.substring(0, at) + letter + word.substring(at + 1);
+        } else if (edit == 1) {
+            return word.substring(0, at) + letter + word.substring(at);
+        } else {
+            return word.substring(0, at) + word.substring(at + 1);
+        }
+    }
+
+    private static int distance(String a, String b, int[] previous, int[] current) {
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            char bChar = b.charAt(j - 1);
+            for (int i = 1; i <= a.length(); i++) {
+                int substitution = previous[i - 1] + (a.charAt(i - 1) == bChar ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[a.length()];
+    }
+}
@@ -0,0 +1,123 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.cache.BookVersions;
+import com.bookstore.controller.RootController;
+import com.bookstore.controller.SimpleWebController;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.service.BookService;
+import com.bookstore.view.HtmlEscaper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTML generation for / and /simple, with the card cache warm and with every
+ * card invalidated before each call, plus escapeHtml on its own.
+ *
+ * The controllers are wired by hand against an in-memory book list so only the
+ * rendering is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageRenderingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int bookCount;
+
+    private List<Book> books;
+
+    private BookVersions bookVersions;
+
+    private RootController rootController;
+
+    private SimpleWebController simpleWebController;
+
+    private String escapeInput;
+
+    @Setup
+    public void setUp() {
+        books = BenchmarkData.books(bookCount, true);
+        bookVersions = new BookVersions();
+        BookService bookService = new BookService() {
+            @Override
+            public List<Book> getAllBooks() {
+                return books;
+            }
+        };
+
+        rootController = new RootController();
+        ReflectionTestUtils.setField(rootController, "bookService", bookService);
+        ReflectionTestUtils.setField(rootController, "bookVersions", bookVersions);
+        ReflectionTestUtils.setField(rootController, "appName", "Bookstore Application");
+        ReflectionTestUtils.setField(rootController, "appVersion", "1.0.0");
+        ReflectionTestUtils.setField(rootController, "appAuthor", "Benchmark");
+        ReflectionTestUtils.setField(rootController, "cardCacheSize", 10_000L);
+        ReflectionTestUtils.invokeMethod(rootController, "buildPageChrome");
+
+        simpleWebController = new SimpleWebController();
+        ReflectionTestUtils.setField(simpleWebController, "bookService", bookService);
+        ReflectionTestUtils.setField(simpleWebController, "bookVersions", bookVersions);
+        ReflectionTestUtils.setField(simpleWebController, "cardCacheSize", 10_000L);
+        ReflectionTestUtils.invokeMethod(simpleWebController, "initCardCache");
+
+        escapeInput = books.get(0).getDescription() + " \"quoted\" & 'single' <tag>";
+    }
+
+    /**
+     * Cold state for the *Uncached benchmarks: every book changes before each call
+     */
+    @State(Scope.Thread)
+    public static class ChangedCatalog {
+
+        @Setup(Level.Invocation)
+        public void touchEveryBook(PageRenderingBenchmark benchmark) {
+            for (Book book : benchmark.books) {
+                benchmark.bookVersions.onBookChanged(BookChangedEvent.updated(book));
+            }
+        }
+    }
+
+    @Benchmark
+    public String rootPage() {
+        return rootController.rootPage();
+    }
+
+    @Benchmark
+    public String rootPageUncached(ChangedCatalog changed) {
+        return rootController.rootPage();
+    }
+
+    @Benchmark
+    public String simpleBookList() {
+        return simpleWebController.simpleBookList();
+    }
+
+    @Benchmark
+    public String simpleBookListUncached(ChangedCatalog changed) {
+        return simpleWebController.simpleBookList();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String escapeHtml() {
+        return HtmlEscaper.escapeHtml(escapeInput);
+    }
+}
@@ -0,0 +1,135 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.BookstoreApplication;
+import com.bookstore.model.Book;
+import com.bookstore.model.Rating;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.RatingRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexed repository queries against rowCount books and as many ratings.
+ * QueryPlanTest checks that each of these queries reads its table through the
+ * expected index; this measures what the indexes buy at a larger scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryPlanBenchmark {
+
+    // Clear of the ids the sample data takes from the sequences
+    private static final long FIRST_ID = 1_000_000;
+
+    @Param({"100000"})
+    private int rowCount;
+
+    private ConfigurableApplicationContext context;
+
+    private BookRepository bookRepository;
+
+    private RatingRepository ratingRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalDateTime now;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BookstoreApplication.class)
+                .web(WebApplicationType.NONE)
+                // Passed as arguments so they override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:query-plans-" + rowCount + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.bookstore=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN");
+        bookRepository = context.getBean(BookRepository.class);
+        ratingRepository = context.getBean(RatingRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        now = LocalDateTime.now();
+
+        insertRows();
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private void insertRows() {
+        List<Object[]> books = new ArrayList<>(rowCount);
+        List<Object[]> ratings = new ArrayList<>(rowCount);
+        Timestamp created = Timestamp.valueOf(now);
+        for (int i = 0; i < rowCount; i++) {
+            long id = FIRST_ID + i;
+            books.add(new Object[] {id, "Title " + i, "Author " + (i % 5000), "isbn-" + i,
+                    9.99, i % 100, created, created});
+            // Ratings spread over the last rowCount minutes, by reviewers rating many books each
+            ratings.add(new Object[] {id, 1 + i % 5, "Reviewer " + (i % 20000), "reviewer " + (i % 20000),
+                    FIRST_ID + (i * 7L) % rowCount, Timestamp.valueOf(now.minusMinutes(i)), created});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO books (id, title, author, isbn, price, stock_quantity, " +
+                "created_at, updated_at, version, rating_sum, rating_count, one_star_count, two_star_count, " +
+                "three_star_count, four_star_count, five_star_count) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, 0, 0, 0, 0, 0)", books);
+        jdbcTemplate.batchUpdate("INSERT INTO ratings (id, rating, reviewer_name, reviewer_key, book_id, " +
+                "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)", ratings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Rating> ratingsOfBook() {
+        return ratingRepository.findByBookIdOrderByCreatedAtDesc(nextBookId());
+    }
+
+    @Benchmark
+    public Double averageRating() {
+        return ratingRepository.findAverageRatingByBookId(nextBookId());
+    }
+
+    @Benchmark
+    public boolean reviewerExists() {
+        return ratingRepository.existsByBookIdAndReviewerKey(nextBookId(), "reviewer 42");
+    }
+
+    @Benchmark
+    public List<Rating> recentRatings() {
+        return ratingRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(10));
+    }
+
+    @Benchmark
+    public List<Book> booksAboveStock() {
+        return bookRepository.findByStockQuantityGreaterThan(98);
+    }
+
+    private long nextBookId() {
+        return FIRST_ID + (next++ * 7919L) % rowCount;
+    }
+}
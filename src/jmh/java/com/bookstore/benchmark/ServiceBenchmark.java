@@ -0,0 +1,136 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.BookstoreApplication;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.service.BookImportService;
+import com.bookstore.service.BookService;
+import com.bookstore.service.ImportReport;
+import com.bookstore.service.RatingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookService.searchBooks and RatingService.getAverageRating against an H2
+ * catalog of bookCount books, a tenth of which carry ratingsPerBook ratings.
+ *
+ * The application context is started without the web layer, on its own
+ * in-memory database, and loaded through the bulk import. searchDatabase runs
+ * the LIKE query that searchBooks falls back to, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final String[] QUERIES = {"orwell", "winter garden", "myst", "978-0000000042", "kingdom"};
+
+    @Param({"1000", "10000"})
+    private int bookCount;
+
+    @Param({"20"})
+    private int ratingsPerBook;
+
+    private ConfigurableApplicationContext context;
+
+    private BookService bookService;
+
+    private RatingService ratingService;
+
+    private BookRepository bookRepository;
+
+    private long[] ratedBookIds;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(BookstoreApplication.class)
+                .web(WebApplicationType.NONE)
+                // Passed as arguments so they override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark-" + bookCount + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.bookstore=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        bookService = context.getBean(BookService.class);
+        ratingService = context.getBean(RatingService.class);
+        bookRepository = context.getBean(BookRepository.class);
+
+        importBooks(context.getBean(BookImportService.class), context.getBean(ObjectMapper.class));
+
+        Random random = new Random(42);
+        List<Book> books = bookRepository.findAll();
+        ratedBookIds = new long[Math.max(1, books.size() / 10)];
+        for (int i = 0; i < ratedBookIds.length; i++) {
+            long bookId = books.get(i * 10).getId();
+            ratedBookIds[i] = bookId;
+            for (int r = 0; r < ratingsPerBook; r++) {
+                ratingService.addRating(bookId, 1 + random.nextInt(5), "reader-" + r, null);
+            }
+        }
+    }
+
+    private void importBooks(BookImportService importService, ObjectMapper objectMapper) throws IOException {
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        for (Book book : BenchmarkData.books(bookCount, false)) {
+            objectMapper.writeValue(ndjson, book);
+            ndjson.write('\n');
+        }
+        ImportReport report = importService.importJson(new ByteArrayInputStream(ndjson.toByteArray()));
+        if (report.getImported() != bookCount) {
+            throw new IllegalStateException("Expected " + bookCount + " books to import, got " + report.getImported());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return bookService.searchBooks(nextQuery());
+    }
+
+    @Benchmark
+    public List<Book> searchDatabase() {
+        String query = nextQuery();
+        return bookRepository.findByAuthorOrTitleContainingIgnoreCase(query);
+    }
+
+    @Benchmark
+    public Double averageRating() {
+        return ratingService.getAverageRating(ratedBookIds[next++ % ratedBookIds.length]);
+    }
+
+    private String nextQuery() {
+        return QUERIES[next++ % QUERIES.length];
+    }
+}
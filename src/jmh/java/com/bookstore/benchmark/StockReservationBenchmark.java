@@ -0,0 +1,127 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.BookstoreApplication;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.service.BookService;
+import com.bookstore.service.InsufficientStockException;
+import com.bookstore.service.StockReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock reservations on a single hot book from many threads, doubling as an
+ * oversell check: after every iteration the units granted must equal the stock
+ * taken, and the stock must never have gone below zero. A violation fails the run.
+ *
+ * reserve keeps reserving until the book sells out, after which the remaining
+ * calls are refusals; reserveAndRelease returns every unit it gets, so with a
+ * small initialStock the threads keep competing for the last few units.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class StockReservationBenchmark {
+
+    @Param({"8", "10000"})
+    private int initialStock;
+
+    private ConfigurableApplicationContext context;
+
+    private StockReservationService stockReservationService;
+
+    private BookRepository bookRepository;
+
+    private BookService bookService;
+
+    private Long bookId;
+
+    private final AtomicLong granted = new AtomicLong();
+
+    private final AtomicLong released = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BookstoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:stock;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.bookstore=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        stockReservationService = context.getBean(StockReservationService.class);
+        bookRepository = context.getBean(BookRepository.class);
+        bookService = context.getBean(BookService.class);
+        bookId = bookService.createBook(new Book("Hot Item", "Benchmark", "HOT-1", new BigDecimal("9.99"))).getId();
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        bookService.updateStock(bookId, initialStock);
+        granted.set(0);
+        released.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkNoOversell() {
+        int stock = bookRepository.findById(bookId).orElseThrow().getStockQuantity();
+        long taken = granted.get() - released.get();
+        if (stock < 0 || taken > initialStock || stock != initialStock - taken) {
+            throw new IllegalStateException("Oversold: started with " + initialStock + ", granted " + granted.get()
+                    + ", released " + released.get() + ", stock now " + stock);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        try {
+            stockReservationService.reserve(bookId, 1);
+            granted.incrementAndGet();
+            return true;
+        } catch (InsufficientStockException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        try {
+            stockReservationService.reserve(bookId, 1);
+            granted.incrementAndGet();
+        } catch (InsufficientStockException e) {
+            return false;
+        }
+        stockReservationService.release(bookId, 1);
+        released.incrementAndGet();
+        return true;
+    }
+}
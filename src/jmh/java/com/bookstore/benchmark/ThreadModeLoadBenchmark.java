@@ -0,0 +1,159 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.BookstoreApplication;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP load on two endpoints that query the database on every request, a
+ * book's ratings and a rating summary of several books, with every SQL
+ * statement delayed by dbLatencyMs, run once on Tomcat's platform-thread pool
+ * and once in the virtual-threads profile. Endpoints served from the in-memory
+ * catalog would not block on the database at all; setup fails if either
+ * endpoint stops issuing SQL.
+ *
+ * The client runs more concurrent requests (JMH threads, override with -t) than
+ * Tomcat's default 200 worker threads, so the platform mode queues requests
+ * once the pool is saturated. The virtual mode needs Java 21+; on older JVMs
+ * its setup fails and only the platform results are reported.
+ *
+ * Each request holds a database connection for the length of its statements,
+ * so the connection pool (poolSize) has to be larger than the client
+ * concurrency, or it becomes the bottleneck in both modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(400)
+@Fork(1)
+public class ThreadModeLoadBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String threadMode;
+
+    @Param({"50"})
+    private int dbLatencyMs;
+
+    @Param({"500"})
+    private int poolSize;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private List<HttpRequest> bookRatings;
+
+    private HttpRequest ratingSummary;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        boolean virtual = "virtual".equals(threadMode);
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21+, running on Java " + Runtime.version());
+        }
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:load-" + threadMode + ";DB_CLOSE_DELAY=-1",
+                "--bookstore.testing.db-latency=" + dbLatencyMs + "ms",
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.bookstore=WARN",
+                "--logging.level.org.springframework.web=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        if (virtual) {
+            args.add("--spring.profiles.active=virtual-threads");
+        }
+        context = new SpringApplicationBuilder(BookstoreApplication.class).run(args.toArray(new String[0]));
+
+        String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<Long> ids = new ArrayList<>();
+        for (Book book : context.getBean(BookRepository.class).findAll()) {
+            ids.add(book.getId());
+        }
+        bookRatings = new ArrayList<>();
+        for (Long id : ids) {
+            bookRatings.add(HttpRequest.newBuilder(URI.create(base + "/api/books/" + id + "/ratings")).build());
+        }
+        String summaryIds = ids.subList(0, Math.min(5, ids.size())).stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        ratingSummary = HttpRequest.newBuilder(URI.create(base + "/api/books/ratings/summary?ids=" + summaryIds)).build();
+
+        requireSql(bookRatings.get(0));
+        requireSql(ratingSummary);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int bookRatings() throws IOException, InterruptedException {
+        return send(bookRatings.get(Math.floorMod(next.getAndIncrement(), bookRatings.size()))).body().length;
+    }
+
+    @Benchmark
+    public int ratingSummary() throws IOException, InterruptedException {
+        return send(ratingSummary).body().length;
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode());
+        }
+        return response;
+    }
+
+    /**
+     * Fail unless the request reaches the database, going by the X-SQL-Statements header
+     */
+    private void requireSql(HttpRequest request) {
+        try {
+            String statements = send(request).headers().firstValue("X-SQL-Statements").orElse("0");
+            if (Integer.parseInt(statements) == 0) {
+                throw new IllegalStateException(request.uri() + " issued no SQL, so it cannot measure database blocking");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
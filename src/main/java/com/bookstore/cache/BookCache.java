@@ -0,0 +1,159 @@
+package com.bookstore.cache;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Book;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for book lookups by id and by ISBN.
+ *
+ * Books are cached by id only; the ISBN cache maps an ISBN to the id of its book
+ * and is re-checked against the cached book, so a change to a book invalidates
+ * exactly one entry. Entries are evicted on size and age, and after every
+ * committed BookChangedEvent or RatingChangedEvent for the book. Hit, miss and
+ * eviction counts are published as the "cache.*" actuator metrics.
+ */
+@Component
+public class BookCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookstore.cache.books.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${bookstore.cache.books.expire-after-write:10m}")
+    private Duration expireAfterWrite;
+
+    private AsyncCache<Long, Book> booksById;
+
+    private Cache<String, Long> bookIdsByIsbn;
+
+    @PostConstruct
+    void init() {
+        booksById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        bookIdsByIsbn = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, booksById, "books.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, bookIdsByIsbn, "books.byIsbn");
+    }
+
+    /**
+     * Cached book for the id, loading it on a miss. Missing books are not cached.
+     */
+    public Optional<Book> getById(Long id, Function<Long, Optional<Book>> loader) {
+        // Only the pending future is created inside the cache's lock; the query runs
+        // outside it, so a virtual thread is never pinned on database I/O. Concurrent
+        // callers wait on the same load, and an invalidation racing it drops its result.
+        CompletableFuture<Book> pending = new CompletableFuture<>();
+        CompletableFuture<Book> cached = booksById.get(id, (key, executor) -> pending);
+        if (cached == pending) {
+            try {
+                pending.complete(loader.apply(id).orElse(null));
+            } catch (RuntimeException e) {
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return Optional.ofNullable(cached.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Cached books for the ids, loading all misses with one call to the loader.
+     * Ids without a book are left out of the result and are not cached.
+     */
+    public Map<Long, Book> getAllById(Collection<Long> ids, Function<Set<Long>, Map<Long, Book>> loader) {
+        // As in getById, the cache only receives a pending future and the loader runs outside its lock
+        CompletableFuture<Map<Long, Book>> pending = new CompletableFuture<>();
+        List<Set<Long>> missing = new ArrayList<>(1);
+        CompletableFuture<Map<Long, Book>> cached = booksById.getAll(ids, (keys, executor) -> {
+            missing.add(new HashSet<>(keys));
+            return pending;
+        });
+        if (!missing.isEmpty()) {
+            try {
+                pending.complete(loader.apply(missing.get(0)));
+            } catch (RuntimeException e) {
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return cached.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Cached book for the ISBN, loading it on a miss or when the cached id no longer
+     * belongs to a book with that ISBN
+     */
+    public Optional<Book> getByIsbn(String isbn, Function<Long, Optional<Book>> idLoader,
+                                    Function<String, Optional<Book>> isbnLoader) {
+        Long id = bookIdsByIsbn.getIfPresent(isbn);
+        if (id != null) {
+            Optional<Book> book = getById(id, idLoader);
+            if (book.isPresent() && isbn.equals(book.get().getIsbn())) {
+                return book;
+            }
+            bookIdsByIsbn.invalidate(isbn);
+        }
+        Optional<Book> book = isbnLoader.apply(isbn);
+        book.ifPresent(found -> bookIdsByIsbn.put(isbn, found.getId()));
+        return book;
+    }
+
+    /**
+     * Drop the cached book; ISBN entries pointing at it are re-validated on their next use
+     */
+    public void invalidate(Long bookId) {
+        booksById.synchronous().invalidate(bookId);
+    }
+
+    @Order(BookVersions.CACHE_LISTENER_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        invalidate(event.getBookId());
+    }
+
+    @Order(BookVersions.CACHE_LISTENER_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        invalidate(event.getBookId());
+    }
+}
@@ -0,0 +1,80 @@
+package com.bookstore.cache;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory change counters: one per book and one for the whole catalog.
+ *
+ * Both are bumped after every committed book or rating change, the catalog
+ * counter first. A reader that samples the catalog version before loading data
+ * and finds it unchanged afterwards therefore knows that every book version it
+ * read in between still describes the data it loaded.
+ *
+ * The caches that versioned responses are served from see each change first
+ * (their listeners run at CACHE_LISTENER_ORDER), so a reader that sees a new
+ * version also loads the data it describes. Listeners that notify clients run
+ * later still, with the default order.
+ *
+ * Counters restart from zero with the process, so they are only comparable
+ * together with the epoch they were issued in.
+ */
+@Component
+public class BookVersions {
+
+    /**
+     * Listener order for caches of data whose version is tracked here
+     */
+    public static final int CACHE_LISTENER_ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    private final long epoch = System.currentTimeMillis();
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    private final ConcurrentHashMap<Long, Long> bookVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Identifies this run of the counters
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Version of the catalog as a whole; changes whenever any book changes
+     */
+    public long catalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /**
+     * Version of one book; changes whenever the book or its ratings change
+     */
+    public long bookVersion(Long bookId) {
+        return bookVersions.getOrDefault(bookId, 0L);
+    }
+
+    @Order(CACHE_LISTENER_ORDER + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        bump(event.getBookId());
+    }
+
+    @Order(CACHE_LISTENER_ORDER + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        bump(event.getBookId());
+    }
+
+    private void bump(Long bookId) {
+        catalogVersion.incrementAndGet();
+        bookVersions.merge(bookId, 1L, Long::sum);
+    }
+}
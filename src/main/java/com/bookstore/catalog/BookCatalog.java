@@ -0,0 +1,246 @@
+package com.bookstore.catalog;
+
+import com.bookstore.cache.BookVersions;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory catalog serving the read endpoints from a {@link CatalogSnapshot}.
+ *
+ * Built from the database once the application is ready. Committed book and
+ * rating changes are queued per book and folded into a new snapshot by a single
+ * background merger, which publishes it with one volatile write; a burst of
+ * writes, such as a bulk import, therefore costs one merge instead of one per
+ * book. Readers only read the volatile field: they never lock, query or merge,
+ * and see a change once the merge that picked it up has been published,
+ * normally within milliseconds of the commit.
+ *
+ * The snapshot holds its own copies of the books, never the entities a
+ * transaction loaded or saved, so later changes to those entities cannot leak
+ * into what readers see. Indexes over the snapshot register a SnapshotListener
+ * to follow it step by step instead of rebuilding.
+ */
+@Component
+public class BookCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(BookCatalog.class);
+
+    // Queue markers: the book was deleted, or it must be reloaded from the database
+    private static final Book DELETED = new Book();
+    private static final Book RELOAD = new Book();
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+    private volatile boolean ready = false;
+
+    // book id -> latest committed state not yet in the snapshot
+    private final Map<Long, Book> pending = new ConcurrentHashMap<>();
+
+    private final ReentrantLock mergeLock = new ReentrantLock();
+
+    // Set while a merge is queued on the merger and has not yet started taking changes
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+
+    private ExecutorService merger;
+
+    private final List<SnapshotListener> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    void init() {
+        merger = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        merger.shutdownNow();
+    }
+
+    /**
+     * Load every book once startup (including sample data) has finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        mergeLock.lock();
+        try {
+            // Anything queued so far is already visible to this query
+            pending.clear();
+            List<Book> books = new ArrayList<>();
+            for (Book book : bookRepository.findAll()) {
+                books.add(book.copy());
+            }
+            CatalogSnapshot previous = snapshot;
+            snapshot = CatalogSnapshot.of(books);
+            ready = true;
+            notifyListeners(previous, null);
+        } finally {
+            mergeLock.unlock();
+        }
+        log.info("Catalog snapshot built with {} books", snapshot.size());
+        // Changes committed during the load were queued and not merged yet
+        scheduleMerge();
+    }
+
+    /**
+     * Queue a committed book change, before its version is bumped. An updated book is
+     * reloaded rather than taken from the event: its rating aggregates are as loaded
+     * by the updating transaction and may miss ratings committed since.
+     */
+    @Order(BookVersions.CACHE_LISTENER_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Book change;
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            change = DELETED;
+        } else if (event.getType() == BookChangedEvent.Type.UPDATED) {
+            change = RELOAD;
+        } else {
+            change = event.getBook().copy();
+        }
+        // A queued reload stays, since it also picks up this change (or finds the book gone)
+        pending.merge(event.getBookId(), change, (queued, latest) -> queued == RELOAD ? RELOAD : latest);
+        scheduleMerge();
+    }
+
+    /**
+     * Queue a reload of the book whose rating totals changed
+     */
+    @Order(BookVersions.CACHE_LISTENER_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        pending.put(event.getBookId(), RELOAD);
+        scheduleMerge();
+    }
+
+    /**
+     * Current snapshot. A change committed just before the call may still be
+     * queued for the merger; callers that must see their own write check the
+     * database when the snapshot does not have it.
+     */
+    public CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Whether the initial build has completed; until then callers should query the database
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Have the listener told of every snapshot published from now on
+     */
+    void addListener(SnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Have the merger fold in the queued changes, unless a merge is already
+     * queued that will still see them. Before the initial build the changes wait,
+     * and rebuild() drops those its load already saw.
+     */
+    private void scheduleMerge() {
+        if (ready && !pending.isEmpty() && mergeScheduled.compareAndSet(false, true)) {
+            merger.execute(this::applyPending);
+        }
+    }
+
+    private void applyPending() {
+        // Cleared before taking changes, so a change queued from here on schedules another merge
+        mergeScheduled.set(false);
+        mergeLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<Long, Book> changes = new HashMap<>(pending);
+            // Only remove what was taken, so a change queued meanwhile waits for the next merge
+            changes.forEach(pending::remove);
+
+            List<Long> reloadIds = new ArrayList<>();
+            for (Map.Entry<Long, Book> change : changes.entrySet()) {
+                if (change.getValue() == RELOAD) {
+                    reloadIds.add(change.getKey());
+                    change.setValue(null);
+                } else if (change.getValue() == DELETED) {
+                    change.setValue(null);
+                }
+            }
+            // A reloaded book that no longer exists stays mapped to null and is removed
+            if (!reloadIds.isEmpty()) {
+                try {
+                    for (Book book : bookRepository.findAllById(reloadIds)) {
+                        changes.put(book.getId(), book.copy());
+                    }
+                } catch (RuntimeException e) {
+                    // Requeue everything taken as reloads; the next committed change retries them
+                    changes.keySet().forEach(id -> pending.put(id, RELOAD));
+                    log.warn("Catalog merge failed, {} books left queued", changes.size(), e);
+                    return;
+                }
+            }
+            CatalogSnapshot previous = snapshot;
+            snapshot = previous.apply(changes);
+            notifyListeners(previous, changes.keySet());
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    /**
+     * Called with the merge lock held, so listeners see the snapshots in order
+     */
+    private void notifyListeners(CatalogSnapshot previous, Set<Long> changedIds) {
+        for (SnapshotListener listener : listeners) {
+            try {
+                listener.snapshotChanged(previous, snapshot, changedIds);
+            } catch (RuntimeException e) {
+                log.warn("Catalog snapshot listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Told of each snapshot the catalog publishes, in order, on the publishing thread
+     */
+    interface SnapshotListener {
+
+        /**
+         * The catalog moved from previous to next by replacing, adding or removing
+         * the books with the given ids; changedIds is null when it was reloaded
+         * from the database
+         */
+        void snapshotChanged(CatalogSnapshot previous, CatalogSnapshot next, Set<Long> changedIds);
+    }
+}
@@ -0,0 +1,108 @@
+package com.bookstore.catalog;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Faceted filtering of the catalog by author, publication decade, price band and stock.
+ *
+ * Answers from a {@link FacetIndex} of compressed row bitmaps over the current
+ * catalog snapshot: a query ORs the bitmaps of the values selected in a facet,
+ * ANDs the facets together and counts every facet value by intersection, so no
+ * book is examined one by one. The first query builds the index in one pass
+ * while concurrent queries wait for it rather than building their own. From
+ * then on, each catalog snapshot carries it over (see {@link FacetIndex#update}),
+ * so a write costs work in proportion to the books it changed; only removing a
+ * book, which moves the rows after it, drops the index for the next query to
+ * rebuild.
+ */
+@Component
+public class BookFacets {
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    // Upper bounds of the price bands, in currency units
+    @Value("${bookstore.facets.price-bands:10,20,50}")
+    private List<BigDecimal> priceBands;
+
+    private long[] bandEdges;
+
+    private volatile FacetIndex index;
+
+    private final ReentrantLock buildLock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        bookCatalog.addListener(this::snapshotChanged);
+        bandEdges = new long[priceBands.size()];
+        for (int i = 0; i < bandEdges.length; i++) {
+            bandEdges[i] = priceBands.get(i).movePointRight(2).longValueExact();
+            if (i > 0 && bandEdges[i] <= bandEdges[i - 1]) {
+                throw new IllegalStateException("bookstore.facets.price-bands must be ascending");
+            }
+        }
+    }
+
+    /**
+     * Up to limit books matching the query with an id greater than afterId, with
+     * the total and facet counts (at most facetLimit authors)
+     */
+    public FacetResult search(FacetQuery query, long afterId, int limit, int facetLimit) {
+        return index().search(query, afterId, limit, facetLimit);
+    }
+
+    /**
+     * Whether the catalog has been loaded; until then there is nothing to facet
+     */
+    public boolean isReady() {
+        return bookCatalog.isReady();
+    }
+
+    /**
+     * Carry the index over to each new snapshot, once it has been built. Runs on
+     * the catalog's merge thread; when rows have moved, the index is dropped and
+     * the next query builds it again.
+     */
+    private void snapshotChanged(CatalogSnapshot previous, CatalogSnapshot next, Set<Long> changedIds) {
+        buildLock.lock();
+        try {
+            FacetIndex current = index;
+            // A build that started after next was published is already up to date
+            if (current == null || current.snapshot() == next) {
+                return;
+            }
+            index = null;
+            if (current.snapshot() == previous && changedIds != null) {
+                index = current.update(next, changedIds);
+            }
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    private FacetIndex index() {
+        FacetIndex current = index;
+        if (current != null) {
+            return current;
+        }
+        buildLock.lock();
+        try {
+            current = index;
+            if (current == null) {
+                current = new FacetIndex(bookCatalog.snapshot(), bandEdges);
+                index = current;
+            }
+            return current;
+        } finally {
+            buildLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.bookstore.catalog;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Rating;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.RatingRepository;
+import com.bookstore.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Top-rated, most-reviewed and trending books, kept in memory.
+ *
+ * Built from the stored rating totals once the application is ready, then
+ * moved one rating at a time from RatingChangedEvents, so reading a board never
+ * aggregates ratings. An event does not apply a delta: it re-reads the book's
+ * stored totals, and trending counts each rating id at most once. Both are
+ * idempotent, so an event arriving before, during or after the build is applied
+ * correctly whether or not the build already saw its rating.
+ *
+ * Top-rated uses a Bayesian average that pulls books with few ratings towards a
+ * fixed prior; the prior is fixed rather than the global mean so one new rating
+ * never reorders every other book. Trending counts the ratings created within
+ * bookstore.leaderboard.trending-window.
+ */
+@Component
+public class BookLeaderboards {
+
+    private static final Logger log = LoggerFactory.getLogger(BookLeaderboards.class);
+
+    public enum Board {
+        RATING,
+        COUNT,
+        TRENDING
+    }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Value("${bookstore.leaderboard.prior-mean:3.0}")
+    private double priorMean;
+
+    @Value("${bookstore.leaderboard.prior-weight:10}")
+    private double priorWeight;
+
+    @Value("${bookstore.leaderboard.trending-window:7d}")
+    private Duration trendingWindow;
+
+    private final Leaderboard topRated = new Leaderboard();
+    private final Leaderboard mostReviewed = new Leaderboard();
+    private final Leaderboard trending = new Leaderboard();
+    private final Map<Board, Leaderboard> boards = new EnumMap<>(Map.of(
+            Board.RATING, topRated, Board.COUNT, mostReviewed, Board.TRENDING, trending));
+
+    // book id -> [rating sum, rating count, ratings within the trending window]
+    private final Map<Long, long[]> totals = new HashMap<>();
+
+    // Ratings within the trending window, oldest first, and the book of each still counted
+    private final ArrayDeque<RecentRating> recent = new ArrayDeque<>();
+    private final Map<Long, Long> recentBookIds = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean ready = false;
+
+    /**
+     * Load the rating totals once startup (including sample data) has finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.lock();
+        try {
+            boards.values().forEach(Leaderboard::clear);
+            totals.clear();
+            recent.clear();
+            recentBookIds.clear();
+            for (Object[] row : bookRepository.findRatingTotals()) {
+                setTotals((Long) row[0], ((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+            }
+            LocalDateTime since = LocalDateTime.now().minus(trendingWindow);
+            for (Object[] row : ratingRepository.findCreatedSince(since)) {
+                addRecent((Long) row[0], (Long) row[1], (LocalDateTime) row[2]);
+            }
+            ready = true;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Leaderboards built with {} rated books", mostReviewed.size());
+    }
+
+    /**
+     * Move the rated book on every board. Runs under the lock, so each read of the
+     * totals starts after the previous one and never sees an older state.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        Rating rating = event.getRating();
+        Long bookId = event.getBookId();
+        lock.lock();
+        try {
+            List<Object[]> rows = bookRepository.findRatingTotalsById(bookId);
+            if (rows.isEmpty()) {
+                setTotals(bookId, 0, 0);
+            } else {
+                setTotals(bookId, ((Number) rows.get(0)[1]).longValue(), ((Number) rows.get(0)[2]).longValue());
+            }
+            if (event.getType() == RatingChangedEvent.Type.ADDED) {
+                addRecent(rating.getId(), bookId, rating.getCreatedAt());
+            } else if (event.getType() == RatingChangedEvent.Type.DELETED) {
+                Long recentBookId = recentBookIds.remove(rating.getId());
+                if (recentBookId != null) {
+                    adjustRecent(recentBookId, -1);
+                }
+            }
+            expireRecent();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop a deleted book from every board
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() != BookChangedEvent.Type.DELETED) {
+            return;
+        }
+        lock.lock();
+        try {
+            long id = event.getBookId();
+            totals.remove(id);
+            topRated.remove(id);
+            mostReviewed.remove(id);
+            trending.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ids and scores of the best books on a board, at most limit of them
+     */
+    public List<SearchHit> top(Board board, int limit) {
+        lock.lock();
+        try {
+            expireRecent();
+            return boards.get(board).top(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether the initial build has completed; until then the boards are empty
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void setTotals(Long bookId, long sum, long count) {
+        long[] bookTotals = totals.get(bookId);
+        if (bookTotals == null) {
+            if (count <= 0) {
+                return;
+            }
+            bookTotals = new long[3];
+            totals.put(bookId, bookTotals);
+        }
+        bookTotals[0] = sum;
+        bookTotals[1] = count;
+        rank(bookId);
+    }
+
+    private void addRecent(Long ratingId, Long bookId, LocalDateTime createdAt) {
+        if (createdAt == null || ratingId == null || recentBookIds.containsKey(ratingId)) {
+            return;
+        }
+        recent.addLast(new RecentRating(ratingId, createdAt));
+        recentBookIds.put(ratingId, bookId);
+        adjustRecent(bookId, 1);
+    }
+
+    private void adjustRecent(Long bookId, int delta) {
+        long[] bookTotals = totals.get(bookId);
+        if (bookTotals != null) {
+            bookTotals[2] += delta;
+            rank(bookId);
+        }
+    }
+
+    private void expireRecent() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(trendingWindow);
+        while (!recent.isEmpty() && recent.peekFirst().createdAt.isBefore(cutoff)) {
+            Long bookId = recentBookIds.remove(recent.pollFirst().ratingId);
+            if (bookId != null) {
+                adjustRecent(bookId, -1);
+            }
+        }
+    }
+
+    /**
+     * Put a book at its current place on each board, or take it off boards it no longer qualifies for
+     */
+    private void rank(Long bookId) {
+        long[] bookTotals = totals.get(bookId);
+        long sum = bookTotals[0];
+        long count = bookTotals[1];
+        if (count > 0) {
+            topRated.put(bookId, (priorWeight * priorMean + sum) / (priorWeight + count));
+            mostReviewed.put(bookId, count);
+        } else {
+            topRated.remove(bookId);
+            mostReviewed.remove(bookId);
+        }
+        if (bookTotals[2] > 0) {
+            trending.put(bookId, bookTotals[2]);
+        } else {
+            trending.remove(bookId);
+            if (count <= 0) {
+                totals.remove(bookId);
+            }
+        }
+    }
+
+    private static final class RecentRating {
+        private final Long ratingId;
+        private final LocalDateTime createdAt;
+
+        RecentRating(Long ratingId, LocalDateTime createdAt) {
+            this.ratingId = ratingId;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.bookstore.catalog;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Price and publication-year range queries over the catalog, sorted server-side
+ * by price, year, average rating or creation time.
+ *
+ * Answers from a {@link RangeIndex} of sorted primitive arrays over the current
+ * catalog snapshot and returns only the requested window. Like the facets, the
+ * index is built by the first query, while concurrent queries wait for it, and
+ * then carried over to each catalog snapshot (see {@link RangeIndex#update}):
+ * only keys that changed are sorted again, and a stock change sorts nothing.
+ * Adding or removing a book drops the index for the next query to rebuild.
+ */
+@Component
+public class BookRanges {
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    private volatile RangeIndex index;
+
+    private final ReentrantLock buildLock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        bookCatalog.addListener(this::snapshotChanged);
+    }
+
+    /**
+     * Up to limit books matching the query, in its order, starting after the given
+     * position (null for the first window)
+     */
+    public RangeResult search(RangeQuery query, RangePosition after, int limit) {
+        return index().search(query, after, limit);
+    }
+
+    /**
+     * Whether the catalog has been loaded; until then there is nothing to sort
+     */
+    public boolean isReady() {
+        return bookCatalog.isReady();
+    }
+
+    /**
+     * Carry the index over to each new snapshot, once it has been built. Runs on
+     * the catalog's merge thread; when rows have moved, the index is dropped and
+     * the next query builds it again.
+     */
+    private void snapshotChanged(CatalogSnapshot previous, CatalogSnapshot next, Set<Long> changedIds) {
+        buildLock.lock();
+        try {
+            RangeIndex current = index;
+            // A build that started after next was published is already up to date
+            if (current == null || current.snapshot() == next) {
+                return;
+            }
+            index = null;
+            if (current.snapshot() == previous && changedIds != null) {
+                index = current.update(next, changedIds);
+            }
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    private RangeIndex index() {
+        RangeIndex current = index;
+        if (current != null) {
+            return current;
+        }
+        buildLock.lock();
+        try {
+            current = index;
+            if (current == null) {
+                current = new RangeIndex(bookCatalog.snapshot());
+                index = current;
+            }
+            return current;
+        } finally {
+            buildLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.bookstore.catalog;
+
+import com.bookstore.model.Book;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable, column-oriented copy of the catalog, ordered by book id.
+ *
+ * Each book is a row across parallel arrays: id, price in cents, stock,
+ * publication year, a dictionary code for the author and the lower-cased title,
+ * next to the Book itself for returning results. Filters are evaluated against
+ * the primitive columns, and author filters once per distinct author rather
+ * than once per book. Snapshots are never modified; {@link #apply} returns a new
+ * one, so any number of threads can scan a snapshot without locking.
+ *
+ * The Book objects are the catalog's own copies, shared by every reader, and
+ * must not be modified.
+ */
+public final class CatalogSnapshot {
+
+    /** Year column value for a book without a publication year */
+    public static final int NO_YEAR = Integer.MIN_VALUE;
+
+    /** Price column value for a book without a price */
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    static final CatalogSnapshot EMPTY = new Builder(0).build();
+
+    private final long[] ids;
+    private final long[] priceCents;
+    private final int[] stock;
+    private final int[] years;
+    private final int[] authorCodes;
+    private final String[] titleKeys;
+    private final Book[] books;
+
+    // author dictionary: code -> author, and code -> lower-cased author for matching
+    private final String[] authors;
+    private final String[] authorKeys;
+
+    private CatalogSnapshot(long[] ids, long[] priceCents, int[] stock, int[] years, int[] authorCodes,
+                            String[] titleKeys, Book[] books, String[] authors, String[] authorKeys) {
+        this.ids = ids;
+        this.priceCents = priceCents;
+        this.stock = stock;
+        this.years = years;
+        this.authorCodes = authorCodes;
+        this.titleKeys = titleKeys;
+        this.books = books;
+        this.authors = authors;
+        this.authorKeys = authorKeys;
+    }
+
+    /**
+     * Snapshot of the given books, in any order
+     */
+    static CatalogSnapshot of(Collection<Book> books) {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(Comparator.comparing(Book::getId));
+        Builder builder = new Builder(sorted.size());
+        for (Book book : sorted) {
+            builder.add(book);
+        }
+        return builder.build();
+    }
+
+    /**
+     * New snapshot with the given changes: a book replaces or adds the row with
+     * its id, and a null value removes the row
+     */
+    CatalogSnapshot apply(Map<Long, Book> changes) {
+        Long[] changedIds = changes.keySet().toArray(new Long[0]);
+        Arrays.sort(changedIds);
+        Builder builder = new Builder(ids.length + changedIds.length);
+        int row = 0;
+        for (Long changedId : changedIds) {
+            while (row < ids.length && ids[row] < changedId) {
+                builder.copy(this, row++);
+            }
+            if (row < ids.length && ids[row] == changedId) {
+                row++;
+            }
+            Book book = changes.get(changedId);
+            if (book != null) {
+                builder.add(book);
+            }
+        }
+        while (row < ids.length) {
+            builder.copy(this, row++);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Number of books
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Every book in id order, as a read-only list backed by the snapshot
+     */
+    public List<Book> books() {
+        return Collections.unmodifiableList(Arrays.asList(books));
+    }
+
+    /**
+     * The book with the given id, or null
+     */
+    public Book get(long id) {
+        int row = row(id);
+        return row >= 0 ? books[row] : null;
+    }
+
+    /**
+     * Books matching the filter, in id order
+     */
+    public List<Book> select(IntPredicate filter) {
+        return window(0, Integer.MAX_VALUE, filter);
+    }
+
+    /**
+     * Up to limit books matching the filter with an id greater than afterId, in id order
+     */
+    public List<Book> window(long afterId, int limit, IntPredicate filter) {
+        int row = firstRowAfter(afterId);
+        List<Book> result = new ArrayList<>(Math.min(limit, 64));
+        for (; row < ids.length && result.size() < limit; row++) {
+            if (filter.test(row)) {
+                result.add(books[row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filter matching every row
+     */
+    public IntPredicate all() {
+        return row -> true;
+    }
+
+    /**
+     * Filter matching books with stock above zero
+     */
+    public IntPredicate inStock() {
+        return row -> stock[row] > 0;
+    }
+
+    /**
+     * Filter matching books whose author contains the text, ignoring case
+     */
+    public IntPredicate authorContains(String text) {
+        String key = key(text);
+        boolean[] matchingAuthors = new boolean[authorKeys.length];
+        for (int code = 0; code < authorKeys.length; code++) {
+            matchingAuthors[code] = authorKeys[code].contains(key);
+        }
+        return row -> matchingAuthors[authorCodes[row]];
+    }
+
+    /**
+     * Filter matching books whose title contains the text, ignoring case
+     */
+    public IntPredicate titleContains(String text) {
+        String key = key(text);
+        return row -> titleKeys[row].contains(key);
+    }
+
+    /**
+     * Id of the book in the given row
+     */
+    public long id(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Price in cents of the book in the given row, or {@link #NO_PRICE}
+     */
+    public long priceCents(int row) {
+        return priceCents[row];
+    }
+
+    /**
+     * Stock quantity of the book in the given row
+     */
+    public int stock(int row) {
+        return stock[row];
+    }
+
+    /**
+     * Publication year of the book in the given row, or {@link #NO_YEAR}
+     */
+    public int year(int row) {
+        return years[row];
+    }
+
+    /**
+     * Author of the book in the given row
+     */
+    public String author(int row) {
+        return authors[authorCodes[row]];
+    }
+
+    /**
+     * The book in the given row
+     */
+    public Book book(int row) {
+        return books[row];
+    }
+
+    /**
+     * Row of the book with the given id, or -1
+     */
+    int row(long id) {
+        int row = Arrays.binarySearch(ids, id);
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * The first row whose id is greater than afterId (size() when there is none)
+     */
+    int firstRowAfter(long afterId) {
+        int row = Arrays.binarySearch(ids, afterId);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    /**
+     * Dictionary code of the author of the book in the given row
+     */
+    int authorCode(int row) {
+        return authorCodes[row];
+    }
+
+    /**
+     * Number of distinct authors; codes run from 0 to this value
+     */
+    int authorCodeCount() {
+        return authors.length;
+    }
+
+    /**
+     * Author with the given dictionary code
+     */
+    String authorName(int code) {
+        return authors[code];
+    }
+
+    private static String key(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Appends rows in id order; the author dictionary is rebuilt as rows are added
+     */
+    private static final class Builder {
+
+        private final long[] ids;
+        private final long[] priceCents;
+        private final int[] stock;
+        private final int[] years;
+        private final int[] authorCodes;
+        private final String[] titleKeys;
+        private final Book[] books;
+        private int size;
+
+        private final Map<String, Integer> authorCodesByName = new HashMap<>();
+        private final List<String> authors = new ArrayList<>();
+
+        // code in the source snapshot -> code in this one, -1 until first seen
+        private CatalogSnapshot remapSource;
+        private int[] remap;
+
+        Builder(int capacity) {
+            ids = new long[capacity];
+            priceCents = new long[capacity];
+            stock = new int[capacity];
+            years = new int[capacity];
+            authorCodes = new int[capacity];
+            titleKeys = new String[capacity];
+            books = new Book[capacity];
+        }
+
+        void add(Book book) {
+            ids[size] = book.getId();
+            priceCents[size] = cents(book.getPrice());
+            stock[size] = book.getStockQuantity() != null ? book.getStockQuantity() : 0;
+            years[size] = book.getPublicationYear() != null ? book.getPublicationYear() : NO_YEAR;
+            authorCodes[size] = authorCode(book.getAuthor() != null ? book.getAuthor() : "");
+            titleKeys[size] = key(book.getTitle());
+            books[size] = book;
+            size++;
+        }
+
+        /**
+         * Copy an unchanged row, translating its author code without rehashing the name
+         */
+        void copy(CatalogSnapshot source, int row) {
+            if (remapSource != source) {
+                remapSource = source;
+                remap = new int[source.authors.length];
+                Arrays.fill(remap, -1);
+            }
+            int sourceCode = source.authorCodes[row];
+            if (remap[sourceCode] < 0) {
+                remap[sourceCode] = authorCode(source.authors[sourceCode]);
+            }
+            ids[size] = source.ids[row];
+            priceCents[size] = source.priceCents[row];
+            stock[size] = source.stock[row];
+            years[size] = source.years[row];
+            authorCodes[size] = remap[sourceCode];
+            titleKeys[size] = source.titleKeys[row];
+            books[size] = source.books[row];
+            size++;
+        }
+
+        CatalogSnapshot build() {
+            String[] authorNames = authors.toArray(new String[0]);
+            String[] authorKeys = new String[authorNames.length];
+            for (int code = 0; code < authorNames.length; code++) {
+                authorKeys[code] = key(authorNames[code]);
+            }
+            return new CatalogSnapshot(
+                    Arrays.copyOf(ids, size), Arrays.copyOf(priceCents, size), Arrays.copyOf(stock, size),
+                    Arrays.copyOf(years, size), Arrays.copyOf(authorCodes, size), Arrays.copyOf(titleKeys, size),
+                    Arrays.copyOf(books, size), authorNames, authorKeys);
+        }
+
+        private int authorCode(String author) {
+            Integer code = authorCodesByName.get(author);
+            if (code == null) {
+                code = authors.size();
+                authors.add(author);
+                authorCodesByName.put(author, code);
+            }
+            return code;
+        }
+
+        private static long cents(BigDecimal price) {
+            return price != null ? price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : NO_PRICE;
+        }
+    }
+}
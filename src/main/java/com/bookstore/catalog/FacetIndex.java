@@ -0,0 +1,504 @@
+package com.bookstore.catalog;
+
+import com.bookstore.model.Book;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Row bitmaps of one catalog snapshot for every author, publication decade,
+ * price band and stock state. Built in one pass over the snapshot's columns and,
+ * like the snapshot, never modified; {@link #update} derives the index of a later
+ * snapshot by copying only what its changed rows touch.
+ */
+final class FacetIndex {
+
+    static final String AUTHOR = "author";
+    static final String DECADE = "decade";
+    static final String PRICE = "price";
+    static final String IN_STOCK = "inStock";
+
+    // No decade or price band; neither is a valid decade or band
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final CatalogSnapshot snapshot;
+
+    // Authors differing only in case are one facet value, shown as in its lowest row;
+    // an author left without books keeps its number and an empty bitmap
+    private final Map<String, Integer> authorsByKey;
+    private final List<String> authorNames;
+    private final RowBitmap[] authors;
+    private final int[] authorByRow;
+    // Authors with books, most books first, for counts over the whole catalog
+    private final int[] authorRanking;
+
+    private final TreeMap<Integer, RowBitmap> decades;
+
+    // Band i holds prices below edge i and at or above edge i - 1; the last band is open-ended
+    private final long[] bandEdges;
+    private final String[] bandLabels;
+    private final RowBitmap[] bands;
+
+    private final RowBitmap inStock;
+    private final RowBitmap outOfStock;
+
+    FacetIndex(CatalogSnapshot snapshot, long[] bandEdges) {
+        this.snapshot = snapshot;
+        this.bandEdges = bandEdges;
+        this.bandLabels = bandLabels(bandEdges);
+        this.authorsByKey = new HashMap<>();
+        this.authorNames = new ArrayList<>();
+
+        int[] authorByCode = new int[snapshot.authorCodeCount()];
+        for (int code = 0; code < authorByCode.length; code++) {
+            String name = snapshot.authorName(code);
+            authorByCode[code] = authorsByKey.computeIfAbsent(key(name), key -> {
+                authorNames.add(name);
+                return authorNames.size() - 1;
+            });
+        }
+
+        RowBitmap.Builder[] authorBuilders = builders(authorNames.size());
+        Map<Integer, RowBitmap.Builder> decadeBuilders = new TreeMap<>();
+        RowBitmap.Builder[] bandBuilders = builders(bandLabels.length);
+        RowBitmap.Builder inStockBuilder = new RowBitmap.Builder();
+        RowBitmap.Builder outOfStockBuilder = new RowBitmap.Builder();
+        authorByRow = new int[snapshot.size()];
+        for (int row = 0; row < snapshot.size(); row++) {
+            int author = authorByCode[snapshot.authorCode(row)];
+            authorByRow[row] = author;
+            authorBuilders[author].add(row);
+            if (snapshot.year(row) != CatalogSnapshot.NO_YEAR) {
+                decadeBuilders.computeIfAbsent(decade(snapshot.year(row)), decade -> new RowBitmap.Builder()).add(row);
+            }
+            if (snapshot.priceCents(row) != CatalogSnapshot.NO_PRICE) {
+                bandBuilders[band(snapshot.priceCents(row))].add(row);
+            }
+            (snapshot.stock(row) > 0 ? inStockBuilder : outOfStockBuilder).add(row);
+        }
+
+        authors = build(authorBuilders);
+        authorRanking = ranking(authors, authorNames);
+        decades = new TreeMap<>();
+        decadeBuilders.forEach((decade, builder) -> decades.put(decade, builder.build()));
+        bands = build(bandBuilders);
+        inStock = inStockBuilder.build();
+        outOfStock = outOfStockBuilder.build();
+    }
+
+    private FacetIndex(CatalogSnapshot snapshot, FacetIndex base, Map<String, Integer> authorsByKey,
+                       List<String> authorNames, RowBitmap[] authors, int[] authorByRow, int[] authorRanking,
+                       TreeMap<Integer, RowBitmap> decades, RowBitmap[] bands, RowBitmap inStock, RowBitmap outOfStock) {
+        this.snapshot = snapshot;
+        this.bandEdges = base.bandEdges;
+        this.bandLabels = base.bandLabels;
+        this.authorsByKey = authorsByKey;
+        this.authorNames = authorNames;
+        this.authors = authors;
+        this.authorByRow = authorByRow;
+        this.authorRanking = authorRanking;
+        this.decades = decades;
+        this.bands = bands;
+        this.inStock = inStock;
+        this.outOfStock = outOfStock;
+    }
+
+    /**
+     * The index of next, a later snapshot that differs from this one in the books
+     * with the given ids, or null when those changes moved rows (a book was removed,
+     * or added before the last row) and the index must be rebuilt. A changed row
+     * leaves and joins only the bitmaps of the values it lost and gained, copying
+     * just its chunk of each; everything else is shared with this index.
+     */
+    FacetIndex update(CatalogSnapshot next, Collection<Long> changedIds) {
+        int size = snapshot.size();
+        int added = 0;
+        for (Long id : changedIds) {
+            int oldRow = snapshot.row(id);
+            int row = next.row(id);
+            if (row < 0 ? oldRow >= 0 : (oldRow >= 0 ? oldRow != row : row < size)) {
+                return null;
+            }
+            if (row >= 0 && oldRow < 0) {
+                added++;
+            }
+        }
+        if (next.size() != size + added) {
+            return null;
+        }
+
+        Change change = new Change(next);
+        for (Long id : changedIds) {
+            int row = next.row(id);
+            if (row >= 0) {
+                change.apply(row, row < size);
+            }
+        }
+        return change.build();
+    }
+
+    /**
+     * The index being derived by update(). Each table of this index is copied the
+     * first time a changed row touches it, and shared otherwise.
+     */
+    private final class Change {
+
+        private final CatalogSnapshot next;
+        private Map<String, Integer> nextAuthorsByKey = authorsByKey;
+        private List<String> nextAuthorNames = authorNames;
+        private RowBitmap[] nextAuthors = authors;
+        private int[] nextAuthorByRow = authorByRow;
+        private TreeMap<Integer, RowBitmap> nextDecades = decades;
+        private RowBitmap[] nextBands = bands;
+        private RowBitmap nextInStock = inStock;
+        private RowBitmap nextOutOfStock = outOfStock;
+        // Authors of changed rows, whose shown name may have changed
+        private final Set<Integer> touchedAuthors = new HashSet<>();
+        private boolean rankingChanged = false;
+
+        Change(CatalogSnapshot next) {
+            this.next = next;
+        }
+
+        /**
+         * Move a row to the values it has in next; existed is false for a row added at the end
+         */
+        void apply(int row, boolean existed) {
+            String name = next.author(row);
+            Integer author = nextAuthorsByKey.get(key(name));
+            if (author == null) {
+                if (nextAuthorsByKey == authorsByKey) {
+                    nextAuthorsByKey = new HashMap<>(authorsByKey);
+                }
+                copyAuthorNames();
+                author = nextAuthorNames.size();
+                nextAuthorNames.add(name);
+                nextAuthorsByKey.put(key(name), author);
+            }
+            int oldAuthor = existed ? authorByRow[row] : -1;
+            if (author != oldAuthor) {
+                if (nextAuthors == authors || nextAuthors.length < nextAuthorNames.size()) {
+                    int copied = nextAuthors.length;
+                    nextAuthors = Arrays.copyOf(nextAuthors, nextAuthorNames.size());
+                    Arrays.fill(nextAuthors, copied, nextAuthors.length, RowBitmap.EMPTY);
+                }
+                if (oldAuthor >= 0) {
+                    nextAuthors[oldAuthor] = nextAuthors[oldAuthor].without(row);
+                    touchedAuthors.add(oldAuthor);
+                }
+                nextAuthors[author] = nextAuthors[author].with(row);
+                if (nextAuthorByRow == authorByRow) {
+                    nextAuthorByRow = Arrays.copyOf(authorByRow, next.size());
+                }
+                nextAuthorByRow[row] = author;
+                rankingChanged = true;
+            }
+            touchedAuthors.add(author);
+
+            int oldDecade = existed ? decadeOf(snapshot, row) : NONE;
+            int decade = decadeOf(next, row);
+            if (decade != oldDecade) {
+                if (nextDecades == decades) {
+                    nextDecades = new TreeMap<>(decades);
+                }
+                if (oldDecade != NONE) {
+                    RowBitmap rest = nextDecades.get(oldDecade).without(row);
+                    if (rest.isEmpty()) {
+                        nextDecades.remove(oldDecade);
+                    } else {
+                        nextDecades.put(oldDecade, rest);
+                    }
+                }
+                if (decade != NONE) {
+                    nextDecades.put(decade, nextDecades.getOrDefault(decade, RowBitmap.EMPTY).with(row));
+                }
+            }
+
+            int oldBand = existed ? bandOf(snapshot, row) : NONE;
+            int band = bandOf(next, row);
+            if (band != oldBand) {
+                if (nextBands == bands) {
+                    nextBands = bands.clone();
+                }
+                if (oldBand != NONE) {
+                    nextBands[oldBand] = nextBands[oldBand].without(row);
+                }
+                if (band != NONE) {
+                    nextBands[band] = nextBands[band].with(row);
+                }
+            }
+
+            boolean stocked = next.stock(row) > 0;
+            if (!existed || stocked != snapshot.stock(row) > 0) {
+                nextInStock = stocked ? nextInStock.with(row) : nextInStock.without(row);
+                nextOutOfStock = stocked ? nextOutOfStock.without(row) : nextOutOfStock.with(row);
+            }
+        }
+
+        FacetIndex build() {
+            // An author is shown as in its lowest row, which may be another book now
+            for (int author : touchedAuthors) {
+                RowBitmap rows = nextAuthors[author];
+                String name = rows.isEmpty() ? nextAuthorNames.get(author) : next.author(rows.next(0));
+                if (!name.equals(nextAuthorNames.get(author))) {
+                    copyAuthorNames();
+                    nextAuthorNames.set(author, name);
+                    rankingChanged = true;
+                }
+            }
+            int[] ranking = rankingChanged ? ranking(nextAuthors, nextAuthorNames) : authorRanking;
+            return new FacetIndex(next, FacetIndex.this, nextAuthorsByKey, nextAuthorNames, nextAuthors,
+                    nextAuthorByRow, ranking, nextDecades, nextBands, nextInStock, nextOutOfStock);
+        }
+
+        private void copyAuthorNames() {
+            if (nextAuthorNames == authorNames) {
+                nextAuthorNames = new ArrayList<>(authorNames);
+            }
+        }
+
+        private int decadeOf(CatalogSnapshot catalog, int row) {
+            return catalog.year(row) != CatalogSnapshot.NO_YEAR ? decade(catalog.year(row)) : NONE;
+        }
+
+        private int bandOf(CatalogSnapshot catalog, int row) {
+            return catalog.priceCents(row) != CatalogSnapshot.NO_PRICE ? band(catalog.priceCents(row)) : NONE;
+        }
+    }
+
+    CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Up to limit matching books with an id greater than afterId, the total, and
+     * the counts of every facet value (at most facetLimit authors, most books first)
+     */
+    FacetResult search(FacetQuery query, long afterId, int limit, int facetLimit) {
+        // One selection per facet, in the order AUTHOR, DECADE, PRICE, IN_STOCK; null when unfiltered
+        RowBitmap[] selections = {
+                authorSelection(query), decadeSelection(query), priceSelection(query), stockSelection(query)
+        };
+        RowBitmap matches = intersect(selections, -1);
+
+        List<Book> books = new ArrayList<>(Math.min(limit, 64));
+        int row = next(matches, snapshot.firstRowAfter(afterId));
+        while (row >= 0 && books.size() < limit) {
+            books.add(snapshot.book(row));
+            row = next(matches, row + 1);
+        }
+
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        facets.put(AUTHOR, authorCounts(intersect(selections, 0), facetLimit));
+        RowBitmap decadeBase = dense(intersect(selections, 1));
+        Map<String, Integer> decadeCounts = new LinkedHashMap<>();
+        decades.forEach((decade, bitmap) -> decadeCounts.put(String.valueOf(decade), count(decadeBase, bitmap)));
+        facets.put(DECADE, decadeCounts);
+        RowBitmap priceBase = dense(intersect(selections, 2));
+        Map<String, Integer> priceCounts = new LinkedHashMap<>();
+        for (int band = 0; band < bands.length; band++) {
+            priceCounts.put(bandLabels[band], count(priceBase, bands[band]));
+        }
+        facets.put(PRICE, priceCounts);
+        RowBitmap stockBase = dense(intersect(selections, 3));
+        Map<String, Integer> stockCounts = new LinkedHashMap<>();
+        stockCounts.put("true", count(stockBase, inStock));
+        stockCounts.put("false", count(stockBase, outOfStock));
+        facets.put(IN_STOCK, stockCounts);
+
+        int total = matches != null ? matches.cardinality() : snapshot.size();
+        return new FacetResult(total, books, row >= 0, facets);
+    }
+
+    private RowBitmap authorSelection(FacetQuery query) {
+        if (query.getAuthors().isEmpty()) {
+            return null;
+        }
+        RowBitmap selection = RowBitmap.EMPTY;
+        for (String author : query.getAuthors()) {
+            Integer index = authorsByKey.get(key(author));
+            if (index != null) {
+                selection = selection.or(authors[index]);
+            }
+        }
+        return selection;
+    }
+
+    private RowBitmap decadeSelection(FacetQuery query) {
+        if (query.getDecades().isEmpty()) {
+            return null;
+        }
+        RowBitmap selection = RowBitmap.EMPTY;
+        for (Integer decade : query.getDecades()) {
+            selection = selection.or(decades.getOrDefault(decade, RowBitmap.EMPTY));
+        }
+        return selection;
+    }
+
+    private RowBitmap priceSelection(FacetQuery query) {
+        if (query.getPriceBands().isEmpty()) {
+            return null;
+        }
+        RowBitmap selection = RowBitmap.EMPTY;
+        for (String label : query.getPriceBands()) {
+            int band = Arrays.asList(bandLabels).indexOf(label);
+            if (band < 0) {
+                throw new IllegalArgumentException("Unknown price band: " + label + " (use one of "
+                        + String.join(", ", bandLabels) + ")");
+            }
+            selection = selection.or(bands[band]);
+        }
+        return selection;
+    }
+
+    private RowBitmap stockSelection(FacetQuery query) {
+        if (query.getInStock() == null) {
+            return null;
+        }
+        return query.getInStock() ? inStock : outOfStock;
+    }
+
+    /**
+     * Counts of the authors with books among the base rows, at most limit of them, most books first
+     */
+    private Map<String, Integer> authorCounts(RowBitmap base, int limit) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        if (base == null) {
+            for (int i = 0; i < Math.min(limit, authorRanking.length); i++) {
+                result.put(authorNames.get(authorRanking[i]), authors[authorRanking[i]].cardinality());
+            }
+            return result;
+        }
+        int[] counts = new int[authors.length];
+        base.forEach(row -> counts[authorByRow[row]]++);
+        // Only authors reaching the limit-th highest count can be shown; sort just those
+        int[] sorted = new int[counts.length];
+        int size = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                sorted[size++] = count;
+            }
+        }
+        Arrays.sort(sorted, 0, size);
+        int threshold = size > limit ? sorted[size - limit] : 1;
+        List<Integer> ranked = new ArrayList<>();
+        for (int author = 0; author < counts.length; author++) {
+            if (counts[author] >= threshold) {
+                ranked.add(author);
+            }
+        }
+        ranked.sort(byCount(counts, authorNames));
+        for (int author : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            result.put(authorNames.get(author), counts[author]);
+        }
+        return result;
+    }
+
+    /**
+     * Authors with books, most books first
+     */
+    private static int[] ranking(RowBitmap[] authors, List<String> names) {
+        int[] sizes = new int[authors.length];
+        List<Integer> ranking = new ArrayList<>(authors.length);
+        for (int author = 0; author < authors.length; author++) {
+            sizes[author] = authors[author].cardinality();
+            if (sizes[author] > 0) {
+                ranking.add(author);
+            }
+        }
+        ranking.sort(byCount(sizes, names));
+        return ranking.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Most books first, then by name
+     */
+    private static Comparator<Integer> byCount(int[] counts, List<String> names) {
+        return (a, b) -> counts[a] != counts[b]
+                ? Integer.compare(counts[b], counts[a])
+                : names.get(a).compareTo(names.get(b));
+    }
+
+    /**
+     * Intersection of every selection except the one at skip, or null when none filters
+     */
+    private static RowBitmap intersect(RowBitmap[] selections, int skip) {
+        RowBitmap result = null;
+        for (int i = 0; i < selections.length; i++) {
+            if (i != skip && selections[i] != null) {
+                result = result == null ? selections[i] : result.and(selections[i]);
+            }
+        }
+        return result;
+    }
+
+    private int next(RowBitmap matches, int fromRow) {
+        if (matches == null) {
+            return fromRow < snapshot.size() ? fromRow : -1;
+        }
+        return matches.next(fromRow);
+    }
+
+    private static RowBitmap dense(RowBitmap base) {
+        return base != null ? base.dense() : null;
+    }
+
+    private static int count(RowBitmap base, RowBitmap value) {
+        return base == null ? value.cardinality() : base.andCardinality(value);
+    }
+
+    private static int decade(int year) {
+        return Math.floorDiv(year, 10) * 10;
+    }
+
+    private int band(long cents) {
+        int band = 0;
+        while (band < bandEdges.length && cents >= bandEdges[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    private static String[] bandLabels(long[] edges) {
+        String[] labels = new String[edges.length + 1];
+        String lower = "0";
+        for (int i = 0; i < edges.length; i++) {
+            String upper = BigDecimal.valueOf(edges[i], 2).stripTrailingZeros().toPlainString();
+            labels[i] = lower + "-" + upper;
+            lower = upper;
+        }
+        labels[edges.length] = lower + "+";
+        return labels;
+    }
+
+    private static RowBitmap.Builder[] builders(int count) {
+        RowBitmap.Builder[] builders = new RowBitmap.Builder[count];
+        for (int i = 0; i < count; i++) {
+            builders[i] = new RowBitmap.Builder();
+        }
+        return builders;
+    }
+
+    private static RowBitmap[] build(RowBitmap.Builder[] builders) {
+        RowBitmap[] bitmaps = new RowBitmap[builders.length];
+        for (int i = 0; i < builders.length; i++) {
+            bitmaps[i] = builders[i].build();
+        }
+        return bitmaps;
+    }
+
+    private static String key(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,52 @@
+package com.bookstore.catalog;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Facet filters: the values selected within one facet are OR'ed, and the facets
+ * with a selection are AND'ed. An empty selection leaves the facet unfiltered.
+ */
+public class FacetQuery {
+
+    private final Set<String> authors;
+    private final Set<Integer> decades;
+    private final Set<String> priceBands;
+    private final Boolean inStock;
+
+    /**
+     * Any argument may be null; years are rounded down to their decade
+     */
+    public FacetQuery(Collection<String> authors, Collection<Integer> years, Collection<String> priceBands,
+                      Boolean inStock) {
+        this.authors = authors != null ? new LinkedHashSet<>(authors) : Collections.emptySet();
+        this.decades = new LinkedHashSet<>();
+        if (years != null) {
+            for (Integer year : years) {
+                if (year != null) {
+                    decades.add(Math.floorDiv(year, 10) * 10);
+                }
+            }
+        }
+        this.priceBands = priceBands != null ? new LinkedHashSet<>(priceBands) : Collections.emptySet();
+        this.inStock = inStock;
+    }
+
+    public Set<String> getAuthors() {
+        return authors;
+    }
+
+    public Set<Integer> getDecades() {
+        return decades;
+    }
+
+    public Set<String> getPriceBands() {
+        return priceBands;
+    }
+
+    public Boolean getInStock() {
+        return inStock;
+    }
+}
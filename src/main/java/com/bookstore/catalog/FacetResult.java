@@ -0,0 +1,54 @@
+package com.bookstore.catalog;
+
+import com.bookstore.model.Book;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Books matching a FacetQuery, one window at a time, with the number of matches
+ * for each facet value. A facet's counts apply the filters of every other facet
+ * but not its own, so they tell how many books selecting that value would add.
+ */
+public class FacetResult {
+
+    private final int total;
+    private final List<Book> books;
+    private final boolean more;
+    private final Map<String, Map<String, Integer>> facets;
+
+    FacetResult(int total, List<Book> books, boolean more, Map<String, Map<String, Integer>> facets) {
+        this.total = total;
+        this.books = books;
+        this.more = more;
+        this.facets = facets;
+    }
+
+    /**
+     * Number of books matching every filter
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * The matching books in this window, in id order
+     */
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * Whether more matching books follow this window
+     */
+    public boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * Facet name -> value -> number of matching books
+     */
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,66 @@
+package com.bookstore.catalog;
+
+import com.bookstore.search.SearchHit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Ids ordered by score, highest first, ties broken by ascending id.
+ *
+ * Backed by a red-black tree plus an id index, so setting or removing a score
+ * is O(log n) and reading the top k entries is O(k). Not thread-safe.
+ */
+class Leaderboard {
+
+    private final TreeSet<SearchHit> ranking = new TreeSet<>(SearchHit.BY_RELEVANCE);
+    private final Map<Long, SearchHit> entries = new HashMap<>();
+
+    /**
+     * Set the score of an id, adding it if absent
+     */
+    void put(long id, double score) {
+        SearchHit previous = entries.get(id);
+        if (previous != null) {
+            if (previous.getScore() == score) {
+                return;
+            }
+            ranking.remove(previous);
+        }
+        SearchHit entry = new SearchHit(id, score);
+        ranking.add(entry);
+        entries.put(id, entry);
+    }
+
+    void remove(long id) {
+        SearchHit previous = entries.remove(id);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+    /**
+     * The highest scoring entries, at most limit of them
+     */
+    List<SearchHit> top(int limit) {
+        List<SearchHit> top = new ArrayList<>(Math.min(limit, ranking.size()));
+        Iterator<SearchHit> it = ranking.iterator();
+        while (top.size() < limit && it.hasNext()) {
+            top.add(it.next());
+        }
+        return top;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        ranking.clear();
+        entries.clear();
+    }
+}
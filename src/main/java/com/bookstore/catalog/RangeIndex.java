@@ -0,0 +1,362 @@
+package com.bookstore.catalog;
+
+import com.bookstore.catalog.RangeQuery.Sort;
+import com.bookstore.model.Book;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Rows of one catalog snapshot sorted by price, publication year, average rating
+ * and creation time, as primitive arrays. Built in one pass per key and, like the
+ * snapshot, never modified; {@link #update} derives the index of a later
+ * snapshot, re-sorting only the keys that changed.
+ *
+ * A range is two binary searches over a sorted key array. Rows are visited by
+ * ordinal, their place in the requested order, so a window never sorts more than
+ * the rows it returns; a filter on a second key is a rank comparison per row.
+ */
+final class RangeIndex {
+
+    private final CatalogSnapshot snapshot;
+    private final Column[] columns;
+
+    RangeIndex(CatalogSnapshot snapshot) {
+        this.snapshot = snapshot;
+        Sort[] sorts = Sort.values();
+        columns = new Column[sorts.length];
+        for (Sort sort : sorts) {
+            columns[sort.ordinal()] = new Column(snapshot, sort);
+        }
+    }
+
+    private RangeIndex(CatalogSnapshot snapshot, Column[] columns) {
+        this.snapshot = snapshot;
+        this.columns = columns;
+    }
+
+    /**
+     * The index of next, a later snapshot that differs from this one in the books
+     * with the given ids, or null when a book was added or removed and the index
+     * must be rebuilt. Columns whose keys are unchanged, such as all of them after
+     * a stock change, are shared with this index; the others are sorted again.
+     */
+    RangeIndex update(CatalogSnapshot next, Collection<Long> changedIds) {
+        if (next.size() != snapshot.size()) {
+            return null;
+        }
+        Sort[] sorts = Sort.values();
+        boolean[] changed = new boolean[sorts.length];
+        for (Long id : changedIds) {
+            int row = snapshot.row(id);
+            if (row != next.row(id)) {
+                return null;
+            }
+            if (row < 0) {
+                continue;
+            }
+            for (Sort sort : sorts) {
+                if (!Objects.equals(sortKey(snapshot, row, sort), sortKey(next, row, sort))) {
+                    changed[sort.ordinal()] = true;
+                }
+            }
+        }
+        Column[] nextColumns = new Column[sorts.length];
+        for (Sort sort : sorts) {
+            int i = sort.ordinal();
+            nextColumns[i] = changed[i] ? new Column(next, sort) : columns[i].withSnapshot(next);
+        }
+        return new RangeIndex(next, nextColumns);
+    }
+
+    CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Up to limit books matching the query, in its order, starting after the given position (null for the first window)
+     */
+    RangeResult search(RangeQuery query, RangePosition after, int limit) {
+        Column order = columns[query.getSort().ordinal()];
+        boolean descending = query.isDescending();
+
+        // Positions [from, to) of each filtered column's sorted keys that are within its range
+        boolean[] filtered = new boolean[columns.length];
+        int[] from = new int[columns.length];
+        int[] to = new int[columns.length];
+        bound(Sort.PRICE, query.getMinPriceCents(), query.getMaxPriceCents(), filtered, from, to);
+        bound(Sort.YEAR, toLong(query.getMinYear()), toLong(query.getMaxYear()), filtered, from, to);
+
+        // Ordinals [low, high) left to visit in the sort column
+        int low = 0;
+        int high = snapshot.size();
+        int sortIndex = query.getSort().ordinal();
+        if (filtered[sortIndex]) {
+            low = descending ? order.valued() - to[sortIndex] : from[sortIndex];
+            high = descending ? order.valued() - from[sortIndex] : to[sortIndex];
+        }
+        if (after != null) {
+            low = Math.max(low, order.nextOrdinal(after, descending));
+        }
+
+        // Walking the sort order visits about (limit + 1) * span / m rows to find limit + 1
+        // of m scattered matches; when the narrowest other range is smaller, sort that instead
+        int driver = -1;
+        for (int i = 0; i < columns.length; i++) {
+            if (filtered[i] && i != sortIndex && (driver < 0 || to[i] - from[i] < to[driver] - from[driver])) {
+                driver = i;
+            }
+        }
+        int[] ordinals;
+        int count;
+        if (driver >= 0 && high > low
+                && (long) (to[driver] - from[driver]) * (to[driver] - from[driver]) <= (long) (limit + 1) * (high - low)) {
+            Column candidates = columns[driver];
+            ordinals = new int[to[driver] - from[driver]];
+            count = 0;
+            for (int position = from[driver]; position < to[driver]; position++) {
+                int row = candidates.row(position, false);
+                int ordinal = order.ordinal(row, descending);
+                if (ordinal >= low && ordinal < high && matches(row, filtered, from, to)) {
+                    ordinals[count++] = ordinal;
+                }
+            }
+            Arrays.sort(ordinals, 0, count);
+        } else {
+            ordinals = new int[Math.min(limit + 1, Math.max(high - low, 0))];
+            count = 0;
+            for (int ordinal = low; ordinal < high && count < ordinals.length; ordinal++) {
+                if (matches(order.row(ordinal, descending), filtered, from, to)) {
+                    ordinals[count++] = ordinal;
+                }
+            }
+        }
+
+        List<Book> books = new ArrayList<>(Math.min(limit, count));
+        RangePosition last = null;
+        for (int i = 0; i < count && i < limit; i++) {
+            int row = order.row(ordinals[i], descending);
+            books.add(snapshot.book(row));
+            last = new RangePosition(order.key(row), snapshot.id(row));
+        }
+        return new RangeResult(books, count > limit, last);
+    }
+
+    private void bound(Sort sort, Long min, Long max, boolean[] filtered, int[] from, int[] to) {
+        if (min == null && max == null) {
+            return;
+        }
+        Column column = columns[sort.ordinal()];
+        filtered[sort.ordinal()] = true;
+        from[sort.ordinal()] = min != null ? column.firstAtLeast(min) : 0;
+        to[sort.ordinal()] = max != null ? column.firstAbove(max) : column.valued();
+    }
+
+    private boolean matches(int row, boolean[] filtered, int[] from, int[] to) {
+        for (int i = 0; i < columns.length; i++) {
+            if (filtered[i]) {
+                int rank = columns[i].rank(row);
+                if (rank < from[i] || rank >= to[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Long toLong(Integer value) {
+        return value != null ? value.longValue() : null;
+    }
+
+    /**
+     * Sort key of the book in the given row, or null when it has none. Ratings
+     * compare by the bits of their exact average, which order like the value for
+     * positive doubles.
+     */
+    static Long sortKey(CatalogSnapshot snapshot, int row, Sort sort) {
+        if (sort == Sort.PRICE) {
+            long cents = snapshot.priceCents(row);
+            return cents != CatalogSnapshot.NO_PRICE ? cents : null;
+        } else if (sort == Sort.YEAR) {
+            int year = snapshot.year(row);
+            return year != CatalogSnapshot.NO_YEAR ? (long) year : null;
+        } else if (sort == Sort.RATING) {
+            Book book = snapshot.book(row);
+            return book.getRatingCount() > 0
+                    ? Double.doubleToLongBits((double) book.getRatingSum() / book.getRatingCount())
+                    : null;
+        } else {
+            LocalDateTime created = snapshot.book(row).getCreatedAt();
+            return created != null ? created.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + created.getNano() / 1_000 : null;
+        }
+    }
+
+    /**
+     * One sort key: the rows with a value ordered by key then id, followed by the rows
+     * without one by id, and each row's place in that order
+     */
+    private static final class Column {
+
+        private final CatalogSnapshot snapshot;
+        private final long[] keys;
+        private final int[] rows;
+        private final int[] ranks;
+
+        Column(CatalogSnapshot snapshot, Sort sort) {
+            this.snapshot = snapshot;
+            int size = snapshot.size();
+            long[] keyByRow = new long[size];
+            int[] valuedRows = new int[size];
+            int[] missingRows = new int[size];
+            int valued = 0;
+            int missing = 0;
+            for (int row = 0; row < size; row++) {
+                Long key = sortKey(snapshot, row, sort);
+                if (key != null) {
+                    keyByRow[row] = key;
+                    valuedRows[valued++] = row;
+                } else {
+                    missingRows[missing++] = row;
+                }
+            }
+            // Rows are in id order, so a stable sort leaves equal keys in id order
+            sortByKey(valuedRows, valued, keyByRow);
+
+            keys = new long[valued];
+            rows = new int[size];
+            ranks = new int[size];
+            for (int position = 0; position < valued; position++) {
+                keys[position] = keyByRow[valuedRows[position]];
+                rows[position] = valuedRows[position];
+            }
+            System.arraycopy(missingRows, 0, rows, valued, missing);
+            for (int position = 0; position < size; position++) {
+                ranks[rows[position]] = position;
+            }
+        }
+
+        private Column(CatalogSnapshot snapshot, long[] keys, int[] rows, int[] ranks) {
+            this.snapshot = snapshot;
+            this.keys = keys;
+            this.rows = rows;
+            this.ranks = ranks;
+        }
+
+        /**
+         * The same column over a snapshot with the same ids in the same rows and the same keys
+         */
+        Column withSnapshot(CatalogSnapshot next) {
+            return new Column(next, keys, rows, ranks);
+        }
+
+        /**
+         * Number of rows with a value
+         */
+        int valued() {
+            return keys.length;
+        }
+
+        int rank(int row) {
+            return ranks[row];
+        }
+
+        Long key(int row) {
+            return ranks[row] < keys.length ? keys[ranks[row]] : null;
+        }
+
+        /**
+         * Ordinal of a row: its position, except that descending order reverses the rows with a value
+         */
+        int ordinal(int row, boolean descending) {
+            int rank = ranks[row];
+            return descending && rank < keys.length ? keys.length - 1 - rank : rank;
+        }
+
+        int row(int ordinal, boolean descending) {
+            return descending && ordinal < keys.length ? rows[keys.length - 1 - ordinal] : rows[ordinal];
+        }
+
+        /**
+         * The first ordinal after the given position
+         */
+        int nextOrdinal(RangePosition after, boolean descending) {
+            if (after.getKey() == null) {
+                int low = keys.length;
+                int high = rows.length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (snapshot.id(rows[mid]) <= after.getId()) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                return low;
+            }
+            // Descending continues below the position, ascending above it
+            return descending
+                    ? keys.length - firstFrom(after.getKey(), after.getId(), true)
+                    : firstFrom(after.getKey(), after.getId(), false);
+        }
+
+        int firstAtLeast(long key) {
+            return firstFrom(key, Long.MIN_VALUE, true);
+        }
+
+        int firstAbove(long key) {
+            return firstFrom(key, Long.MAX_VALUE, false);
+        }
+
+        /**
+         * First position whose key and id are at or after (inclusive) or after (exclusive) the given ones
+         */
+        private int firstFrom(long key, long id, boolean inclusive) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int compared = keys[mid] != key ? Long.compare(keys[mid], key) : Long.compare(snapshot.id(rows[mid]), id);
+                if (compared < 0 || (compared == 0 && !inclusive)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Stable bottom-up merge sort of the first count rows by their keys
+         */
+        private static void sortByKey(int[] rows, int count, long[] keyByRow) {
+            int[] source = rows;
+            int[] target = new int[count];
+            for (int width = 1; width < count; width *= 2) {
+                for (int start = 0; start < count; start += 2 * width) {
+                    int middle = Math.min(start + width, count);
+                    int end = Math.min(start + 2 * width, count);
+                    int left = start;
+                    int right = middle;
+                    for (int i = start; i < end; i++) {
+                        if (left < middle && (right == end || keyByRow[source[left]] <= keyByRow[source[right]])) {
+                            target[i] = source[left++];
+                        } else {
+                            target[i] = source[right++];
+                        }
+                    }
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            if (source != rows) {
+                System.arraycopy(source, 0, rows, 0, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.bookstore.catalog;
+
+/**
+ * A place in a sorted range result: the sort key and id of the last book
+ * returned. The next window starts after it, even if that book has since
+ * changed or been deleted.
+ */
+public class RangePosition {
+
+    private final Long key;
+    private final long id;
+
+    public RangePosition(Long key, long id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * The book's sort key, or null when it had no value for the sort
+     */
+    public Long getKey() {
+        return key;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,73 @@
+package com.bookstore.catalog;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Price and publication-year ranges, both bounds inclusive and either one
+ * optional, and the order to return the matching books in. Books without a
+ * value for the sort key come last, by id, in either direction.
+ */
+public class RangeQuery {
+
+    public enum Sort {
+        PRICE,
+        YEAR,
+        RATING,
+        CREATED_AT
+    }
+
+    private final Long minPriceCents;
+    private final Long maxPriceCents;
+    private final Integer minYear;
+    private final Integer maxYear;
+    private final Sort sort;
+    private final boolean descending;
+
+    /**
+     * Any bound may be null; prices are in currency units and compared to the cent
+     */
+    public RangeQuery(BigDecimal minPrice, BigDecimal maxPrice, Integer minYear, Integer maxYear,
+                      Sort sort, boolean descending) {
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        if (minYear != null && maxYear != null && minYear > maxYear) {
+            throw new IllegalArgumentException("minYear must not be greater than maxYear");
+        }
+        this.minPriceCents = cents(minPrice, RoundingMode.CEILING);
+        this.maxPriceCents = cents(maxPrice, RoundingMode.FLOOR);
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.sort = sort;
+        this.descending = descending;
+    }
+
+    public Long getMinPriceCents() {
+        return minPriceCents;
+    }
+
+    public Long getMaxPriceCents() {
+        return maxPriceCents;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    private static Long cents(BigDecimal price, RoundingMode rounding) {
+        return price != null ? price.setScale(2, rounding).unscaledValue().longValueExact() : null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.bookstore.catalog;
+
+import com.bookstore.model.Book;
+
+import java.util.List;
+
+/**
+ * One window of books matching a RangeQuery, in the requested order
+ */
+public class RangeResult {
+
+    private final List<Book> books;
+    private final boolean more;
+    private final RangePosition last;
+
+    RangeResult(List<Book> books, boolean more, RangePosition last) {
+        this.books = books;
+        this.more = more;
+        this.last = last;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * Whether more matching books follow this window
+     */
+    public boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * Position of the last book in this window, or null when it is empty
+     */
+    public RangePosition getLast() {
+        return last;
+    }
+}
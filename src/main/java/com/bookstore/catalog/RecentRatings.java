@@ -0,0 +1,204 @@
+package com.bookstore.catalog;
+
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.model.Rating;
+import com.bookstore.repository.RatingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recently added ratings, held in a lock-free ring buffer.
+ *
+ * Each added rating claims the next sequence number and overwrites the oldest
+ * slot; readers walk back from the newest sequence and skip any slot that has
+ * been overwritten meanwhile, so neither side ever blocks. Updated and deleted
+ * ratings are replaced in place. Ratings are stored without their book, which
+ * is attached from the catalog snapshot when read, so a read issues no query.
+ *
+ * Changes committed while the initial load runs are held back and applied once
+ * it has finished, skipping ratings the load already picked up.
+ */
+@Component
+public class RecentRatings {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentRatings.class);
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Value("${bookstore.ratings.recent.capacity:100}")
+    private int capacity;
+
+    private AtomicReferenceArray<Slot> slots;
+
+    // Sequence number the next added rating will take
+    private final AtomicLong next = new AtomicLong();
+
+    private volatile boolean ready = false;
+
+    // Changes committed since the initial load started, while it is running; guarded by itself
+    private final List<RatingChangedEvent> heldBack = new ArrayList<>();
+
+    // Whether the initial load is running; guarded by heldBack
+    private boolean loading = false;
+
+    /**
+     * Load the latest ratings once startup (including sample data) has finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (heldBack) {
+            // Changes committed before this point are visible to the query below
+            ready = false;
+            loading = true;
+            heldBack.clear();
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        next.set(0);
+        List<Rating> latest = ratingRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(capacity));
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            add(latest.get(i).getBook().getId(), latest.get(i));
+        }
+        int replayed;
+        synchronized (heldBack) {
+            replayed = heldBack.size();
+            for (RatingChangedEvent event : heldBack) {
+                // The query may already have seen a rating whose event arrived after the load started
+                if (event.getType() != RatingChangedEvent.Type.ADDED || !contains(event.getRating().getId())) {
+                    apply(event);
+                }
+            }
+            heldBack.clear();
+            loading = false;
+            ready = true;
+        }
+        log.info("Recent ratings loaded with {} of {} slots used, {} changes replayed",
+                latest.size(), capacity, replayed);
+    }
+
+    /**
+     * Record a committed rating change, or hold it back while the initial load runs.
+     * Changes committed before the load starts are left to its query.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        if (!ready) {
+            synchronized (heldBack) {
+                if (!ready) {
+                    if (loading) {
+                        heldBack.add(event);
+                    }
+                    return;
+                }
+            }
+        }
+        apply(event);
+    }
+
+    /**
+     * Up to limit of the latest ratings, newest first, each with its book attached
+     */
+    public List<Rating> latest(int limit) {
+        CatalogSnapshot catalog = bookCatalog.snapshot();
+        long newest = next.get() - 1;
+        long oldest = Math.max(0, newest - capacity + 1);
+        List<Rating> ratings = new ArrayList<>(Math.min(limit, capacity));
+        for (long seq = newest; seq >= oldest && ratings.size() < limit; seq--) {
+            Slot slot = slots.get(index(seq));
+            // Not yet written, already overwritten by a newer rating, or deleted
+            if (slot == null || slot.seq != seq || slot.rating == null) {
+                continue;
+            }
+            Book book = catalog.get(slot.bookId);
+            if (book != null) {
+                ratings.add(withBook(slot.rating, book));
+            }
+        }
+        return ratings;
+    }
+
+    /**
+     * Whether the initial load has completed; until then callers should query the database
+     */
+    public boolean isReady() {
+        return ready && bookCatalog.isReady();
+    }
+
+    private void apply(RatingChangedEvent event) {
+        if (event.getType() == RatingChangedEvent.Type.ADDED) {
+            add(event.getBookId(), event.getRating());
+        } else {
+            replace(event.getRating(), event.getType() == RatingChangedEvent.Type.DELETED);
+        }
+    }
+
+    private boolean contains(Long ratingId) {
+        for (int i = 0; i < capacity; i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.rating != null && slot.rating.getId().equals(ratingId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(Long bookId, Rating rating) {
+        long seq = next.getAndIncrement();
+        slots.set(index(seq), new Slot(seq, bookId, withBook(rating, null)));
+    }
+
+    private void replace(Rating rating, boolean deleted) {
+        for (int i = 0; i < capacity; i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.rating != null && slot.rating.getId().equals(rating.getId())) {
+                Slot replacement = new Slot(slot.seq, slot.bookId, deleted ? null : withBook(rating, null));
+                // Losing the race means the slot now holds a newer rating, which must be kept
+                slots.compareAndSet(i, slot, replacement);
+                return;
+            }
+        }
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    /**
+     * Detached copy of a rating, so later changes to the managed entity are not seen
+     */
+    private static Rating withBook(Rating rating, Book book) {
+        Rating copy = new Rating(rating.getRating(), rating.getReviewerName(), rating.getComment(), book);
+        copy.setId(rating.getId());
+        copy.setCreatedAt(rating.getCreatedAt());
+        copy.setUpdatedAt(rating.getUpdatedAt());
+        return copy;
+    }
+
+    private static final class Slot {
+        private final long seq;
+        private final Long bookId;
+        private final Rating rating;
+
+        Slot(long seq, Long bookId, Rating rating) {
+            this.seq = seq;
+            this.bookId = bookId;
+            this.rating = rating;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.bookstore.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of snapshot rows, in the style of a Roaring bitmap.
+ *
+ * Rows are split into chunks of 65536 by their high 16 bits. A chunk with at
+ * most 1024 rows is stored as a sorted char[] of the low bits (2 bytes a row),
+ * a fuller one as a long[1024] bitmap (8 KB whatever its size), so sparse sets
+ * such as one author stay small and dense ones such as in-stock are plain word
+ * operations. The cut-off is below Roaring's 4096 because counting is what the
+ * facets do most: past 1024 rows, 1024 word ANDs beat a probe per row.
+ * Intersections and unions work chunk by chunk, skipping chunks missing on
+ * either side. Adding or removing one row copies only that row's chunk and
+ * shares the others.
+ */
+final class RowBitmap {
+
+    static final RowBitmap EMPTY = new RowBitmap(new int[0], new Object[0]);
+
+    private static final int ARRAY_MAX = 1024;
+    private static final int WORDS = 1024;
+
+    // High 16 bits of each chunk, ascending, and its char[] or long[] container
+    private final int[] keys;
+    private final Object[] containers;
+    private final int cardinality;
+
+    private RowBitmap(int[] keys, Object[] containers) {
+        this(keys, containers, count(containers));
+    }
+
+    private RowBitmap(int[] keys, Object[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * The same set with the row added
+     */
+    RowBitmap with(int row) {
+        int index = Arrays.binarySearch(keys, row >>> 16);
+        char low = (char) row;
+        if (index < 0) {
+            return withChunk(-index - 1, row >>> 16, new char[] {low}, cardinality + 1);
+        }
+        if (containers[index] instanceof char[] values) {
+            int at = Arrays.binarySearch(values, low);
+            if (at >= 0) {
+                return this;
+            }
+            at = -at - 1;
+            char[] added = new char[values.length + 1];
+            System.arraycopy(values, 0, added, 0, at);
+            added[at] = low;
+            System.arraycopy(values, at, added, at + 1, values.length - at);
+            return replaceChunk(index, added.length <= ARRAY_MAX ? added : toWords(added, added.length),
+                    cardinality + 1);
+        }
+        long[] words = (long[]) containers[index];
+        if (contains(words, low)) {
+            return this;
+        }
+        long[] added = words.clone();
+        added[low >>> 6] |= 1L << low;
+        return replaceChunk(index, added, cardinality + 1);
+    }
+
+    /**
+     * The same set without the row
+     */
+    RowBitmap without(int row) {
+        int index = Arrays.binarySearch(keys, row >>> 16);
+        if (index < 0) {
+            return this;
+        }
+        char low = (char) row;
+        Object removed;
+        if (containers[index] instanceof char[] values) {
+            int at = Arrays.binarySearch(values, low);
+            if (at < 0) {
+                return this;
+            }
+            char[] rest = new char[values.length - 1];
+            System.arraycopy(values, 0, rest, 0, at);
+            System.arraycopy(values, at + 1, rest, at, rest.length - at);
+            removed = rest;
+        } else {
+            long[] words = (long[]) containers[index];
+            if (!contains(words, low)) {
+                return this;
+            }
+            long[] rest = words.clone();
+            rest[low >>> 6] &= ~(1L << low);
+            removed = compact(rest);
+        }
+        if (count(removed) > 0) {
+            return replaceChunk(index, removed, cardinality - 1);
+        }
+        int[] restKeys = new int[keys.length - 1];
+        Object[] restContainers = new Object[keys.length - 1];
+        System.arraycopy(keys, 0, restKeys, 0, index);
+        System.arraycopy(keys, index + 1, restKeys, index, restKeys.length - index);
+        System.arraycopy(containers, 0, restContainers, 0, index);
+        System.arraycopy(containers, index + 1, restContainers, index, restContainers.length - index);
+        return new RowBitmap(restKeys, restContainers, cardinality - 1);
+    }
+
+    /**
+     * Number of rows in the set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Rows in both sets
+     */
+    RowBitmap and(RowBitmap other) {
+        List<Integer> resultKeys = new ArrayList<>();
+        List<Object> resultContainers = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object container = and(containers[i], other.containers[j]);
+                if (count(container) > 0) {
+                    resultKeys.add(keys[i]);
+                    resultContainers.add(container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return of(resultKeys, resultContainers);
+    }
+
+    /**
+     * Rows in either set
+     */
+    RowBitmap or(RowBitmap other) {
+        List<Integer> resultKeys = new ArrayList<>();
+        List<Object> resultContainers = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys.add(keys[i]);
+                resultContainers.add(containers[i++]);
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys.add(other.keys[j]);
+                resultContainers.add(other.containers[j++]);
+            } else {
+                resultKeys.add(keys[i]);
+                resultContainers.add(or(containers[i++], other.containers[j++]));
+            }
+        }
+        return of(resultKeys, resultContainers);
+    }
+
+    /**
+     * Number of rows in both sets, without building the intersection
+     */
+    int andCardinality(RowBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCount(containers[i++], other.containers[j++]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The smallest row in the set that is at least fromRow, or -1
+     */
+    int next(int fromRow) {
+        int key = fromRow >>> 16;
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (; index < keys.length; index++) {
+            int low = keys[index] == key ? fromRow & 0xFFFF : 0;
+            int found = next(containers[index], low);
+            if (found >= 0) {
+                return keys[index] << 16 | found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The same set with every chunk held as a bitmap, for a base that many other
+     * sets are counted against: each count is then a probe per row or a word AND,
+     * never a merge of two sorted arrays
+     */
+    RowBitmap dense() {
+        Object[] words = new Object[containers.length];
+        for (int i = 0; i < containers.length; i++) {
+            words[i] = containers[i] instanceof char[] values ? toWords(values, values.length) : containers[i];
+        }
+        return new RowBitmap(keys, words, cardinality);
+    }
+
+    /**
+     * Pass every row in the set to the action, in ascending order
+     */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            int high = keys[i] << 16;
+            if (containers[i] instanceof char[] values) {
+                for (char value : values) {
+                    action.accept(high | value);
+                }
+            } else {
+                long[] words = (long[]) containers[i];
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(high | w << 6 | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private RowBitmap replaceChunk(int index, Object container, int newCardinality) {
+        Object[] newContainers = containers.clone();
+        newContainers[index] = container;
+        return new RowBitmap(keys, newContainers, newCardinality);
+    }
+
+    private RowBitmap withChunk(int index, int key, Object container, int newCardinality) {
+        int[] newKeys = new int[keys.length + 1];
+        Object[] newContainers = new Object[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(containers, index, newContainers, index + 1, containers.length - index);
+        newKeys[index] = key;
+        newContainers[index] = container;
+        return new RowBitmap(newKeys, newContainers, newCardinality);
+    }
+
+    private static RowBitmap of(List<Integer> keys, List<Object> containers) {
+        int[] keyArray = new int[keys.size()];
+        for (int i = 0; i < keyArray.length; i++) {
+            keyArray[i] = keys.get(i);
+        }
+        return new RowBitmap(keyArray, containers.toArray());
+    }
+
+    private static int count(Object[] containers) {
+        int total = 0;
+        for (Object container : containers) {
+            total += count(container);
+        }
+        return total;
+    }
+
+    private static int count(Object container) {
+        if (container instanceof char[] values) {
+            return values.length;
+        }
+        int count = 0;
+        for (long word : (long[]) container) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static boolean contains(long[] words, int low) {
+        return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof char[] left && b instanceof char[] right) {
+            char[] result = new char[Math.min(left.length, right.length)];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.length && j < right.length) {
+                if (left[i] < right[j]) {
+                    i++;
+                } else if (left[i] > right[j]) {
+                    j++;
+                } else {
+                    result[size++] = left[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+        if (a instanceof long[] && b instanceof char[]) {
+            return and(b, a);
+        }
+        if (a instanceof char[] values) {
+            long[] words = (long[]) b;
+            char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values) {
+                if (contains(words, value)) {
+                    result[size++] = value;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+        long[] left = (long[]) a;
+        long[] right = (long[]) b;
+        long[] result = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+            result[w] = left[w] & right[w];
+        }
+        return compact(result);
+    }
+
+    private static Object or(Object a, Object b) {
+        if (a instanceof char[] left && b instanceof char[] right) {
+            char[] result = new char[left.length + right.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.length || j < right.length) {
+                if (j == right.length || (i < left.length && left[i] < right[j])) {
+                    result[size++] = left[i++];
+                } else if (i == left.length || left[i] > right[j]) {
+                    result[size++] = right[j++];
+                } else {
+                    result[size++] = left[i++];
+                    j++;
+                }
+            }
+            return size <= ARRAY_MAX ? Arrays.copyOf(result, size) : toWords(result, size);
+        }
+        if (a instanceof long[] && b instanceof char[]) {
+            return or(b, a);
+        }
+        if (a instanceof char[] values) {
+            long[] result = ((long[]) b).clone();
+            for (char value : values) {
+                result[value >>> 6] |= 1L << value;
+            }
+            return result;
+        }
+        long[] left = (long[]) a;
+        long[] right = (long[]) b;
+        long[] result = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+            result[w] = left[w] | right[w];
+        }
+        return result;
+    }
+
+    private static int andCount(Object a, Object b) {
+        if (a instanceof char[] left && b instanceof char[] right) {
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.length && j < right.length) {
+                if (left[i] < right[j]) {
+                    i++;
+                } else if (left[i] > right[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        if (a instanceof long[] && b instanceof char[]) {
+            return andCount(b, a);
+        }
+        if (a instanceof char[] values) {
+            long[] words = (long[]) b;
+            int count = 0;
+            for (char value : values) {
+                if (contains(words, value)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        long[] left = (long[]) a;
+        long[] right = (long[]) b;
+        int count = 0;
+        for (int w = 0; w < WORDS; w++) {
+            count += Long.bitCount(left[w] & right[w]);
+        }
+        return count;
+    }
+
+    private static int next(Object container, int low) {
+        if (container instanceof char[] values) {
+            int index = Arrays.binarySearch(values, (char) low);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < values.length ? values[index] : -1;
+        }
+        long[] words = (long[]) container;
+        int w = low >>> 6;
+        long word = words[w] & (-1L << low);
+        while (true) {
+            if (word != 0) {
+                return w << 6 | Long.numberOfTrailingZeros(word);
+            }
+            if (++w == WORDS) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    private static long[] toWords(char[] values, int size) {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < size; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    /**
+     * A bitmap container, or the sorted array for it when it has become sparse
+     */
+    private static Object compact(long[] words) {
+        int count = count(words);
+        if (count > ARRAY_MAX) {
+            return words;
+        }
+        char[] values = new char[count];
+        int size = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[size++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Collects rows added in ascending order
+     */
+    static final class Builder {
+
+        private final List<Integer> keys = new ArrayList<>();
+        private final List<Object> containers = new ArrayList<>();
+        private int key = -1;
+        private char[] values = new char[4];
+        private int size;
+
+        void add(int row) {
+            int rowKey = row >>> 16;
+            if (rowKey != key) {
+                flush();
+                key = rowKey;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, 1 << 16));
+            }
+            values[size++] = (char) row;
+        }
+
+        RowBitmap build() {
+            flush();
+            return of(keys, containers);
+        }
+
+        private void flush() {
+            if (size == 0) {
+                return;
+            }
+            keys.add(key);
+            containers.add(size <= ARRAY_MAX ? Arrays.copyOf(values, size) : toWords(values, size));
+            size = 0;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.bookstore.config;
 
 import com.bookstore.model.Book;
-import com.bookstore.model.Rating;
 import com.bookstore.repository.BookRepository;
-import com.bookstore.repository.RatingRepository;
+import com.bookstore.service.BookService;
+import com.bookstore.service.RatingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -25,7 +25,10 @@ public class DataInitializer implements CommandLineRunner {
     private BookRepository bookRepository;
     
     @Autowired
-    private RatingRepository ratingRepository;
+    private BookService bookService;
+    
+    @Autowired
+    private RatingService ratingService;
 
     @Override
     public void run(String... args) throws Exception {
@@ -83,12 +86,12 @@ public class DataInitializer implements CommandLineRunner {
         book5.setDescription("A controversial novel about teenage rebellion");
         book5.setStockQuantity(18);
 
-        // Save all books
-        bookRepository.save(book1);
-        bookRepository.save(book2);
-        bookRepository.save(book3);
-        bookRepository.save(book4);
-        bookRepository.save(book5);
+        // Save all books through the service so catalog versions and indexes see them
+        bookService.createBook(book1);
+        bookService.createBook(book2);
+        bookService.createBook(book3);
+        bookService.createBook(book4);
+        bookService.createBook(book5);
 
         System.out.println("Sample books initialized successfully!");
     }
@@ -105,32 +108,32 @@ public class DataInitializer implements CommandLineRunner {
             Book book5 = books.get(4); // The Catcher in the Rye
             
             // Ratings for "The Great Gatsby"
-            ratingRepository.save(new Rating(5, "Alice Johnson", "A masterpiece of American literature! The symbolism and prose are simply beautiful.", book1));
-            ratingRepository.save(new Rating(4, "Bob Smith", "Great book, but the ending was a bit sad for my taste.", book1));
-            ratingRepository.save(new Rating(5, "Carol Davis", "One of my all-time favorites. Fitzgerald's writing is incredible.", book1));
+            ratingService.addRating(book1.getId(), 5, "Alice Johnson", "A masterpiece of American literature! The symbolism and prose are simply beautiful.");
+            ratingService.addRating(book1.getId(), 4, "Bob Smith", "Great book, but the ending was a bit sad for my taste.");
+            ratingService.addRating(book1.getId(), 5, "Carol Davis", "One of my all-time favorites. Fitzgerald's writing is incredible.");
             
             // Ratings for "To Kill a Mockingbird"
-            ratingRepository.save(new Rating(5, "David Wilson", "Powerful and moving. A must-read for everyone.", book2));
-            ratingRepository.save(new Rating(5, "Emma Brown", "Beautifully written with important themes that are still relevant today.", book2));
-            ratingRepository.save(new Rating(4, "Frank Miller", "Excellent story and character development.", book2));
-            ratingRepository.save(new Rating(5, "Grace Lee", "This book changed my perspective on many things. Highly recommended!", book2));
+            ratingService.addRating(book2.getId(), 5, "David Wilson", "Powerful and moving. A must-read for everyone.");
+            ratingService.addRating(book2.getId(), 5, "Emma Brown", "Beautifully written with important themes that are still relevant today.");
+            ratingService.addRating(book2.getId(), 4, "Frank Miller", "Excellent story and character development.");
+            ratingService.addRating(book2.getId(), 5, "Grace Lee", "This book changed my perspective on many things. Highly recommended!");
             
             // Ratings for "1984"
-            ratingRepository.save(new Rating(5, "Henry Jones", "Chilling and prophetic. More relevant than ever in today's world.", book3));
-            ratingRepository.save(new Rating(4, "Ivy Chen", "Dystopian masterpiece, though quite depressing.", book3));
-            ratingRepository.save(new Rating(5, "Jack Taylor", "Orwell's vision is terrifyingly accurate.", book3));
+            ratingService.addRating(book3.getId(), 5, "Henry Jones", "Chilling and prophetic. More relevant than ever in today's world.");
+            ratingService.addRating(book3.getId(), 4, "Ivy Chen", "Dystopian masterpiece, though quite depressing.");
+            ratingService.addRating(book3.getId(), 5, "Jack Taylor", "Orwell's vision is terrifyingly accurate.");
             
             // Ratings for "Pride and Prejudice"
-            ratingRepository.save(new Rating(5, "Kate Anderson", "Perfect romance with witty dialogue and strong characters.", book4));
-            ratingRepository.save(new Rating(4, "Liam O'Connor", "Not usually my genre, but I enjoyed it more than expected.", book4));
-            ratingRepository.save(new Rating(5, "Mary White", "Jane Austen at her finest. Elizabeth Bennet is such a great character!", book4));
-            ratingRepository.save(new Rating(4, "Nick Garcia", "Well-written period piece with timeless themes.", book4));
+            ratingService.addRating(book4.getId(), 5, "Kate Anderson", "Perfect romance with witty dialogue and strong characters.");
+            ratingService.addRating(book4.getId(), 4, "Liam O'Connor", "Not usually my genre, but I enjoyed it more than expected.");
+            ratingService.addRating(book4.getId(), 5, "Mary White", "Jane Austen at her finest. Elizabeth Bennet is such a great character!");
+            ratingService.addRating(book4.getId(), 4, "Nick Garcia", "Well-written period piece with timeless themes.");
             
             // Ratings for "The Catcher in the Rye"
-            ratingRepository.save(new Rating(3, "Olivia Martinez", "Interesting but Holden can be quite annoying at times.", book5));
-            ratingRepository.save(new Rating(4, "Paul Kim", "A unique voice in literature. Captures teenage angst perfectly.", book5));
-            ratingRepository.save(new Rating(2, "Quinn Thompson", "Didn't connect with the main character. Found it hard to finish.", book5));
-            ratingRepository.save(new Rating(5, "Rachel Green", "Brilliant portrayal of adolescent alienation. Salinger is a genius.", book5));
+            ratingService.addRating(book5.getId(), 3, "Olivia Martinez", "Interesting but Holden can be quite annoying at times.");
+            ratingService.addRating(book5.getId(), 4, "Paul Kim", "A unique voice in literature. Captures teenage angst perfectly.");
+            ratingService.addRating(book5.getId(), 2, "Quinn Thompson", "Didn't connect with the main character. Found it hard to finish.");
+            ratingService.addRating(book5.getId(), 5, "Rachel Green", "Brilliant portrayal of adolescent alienation. Salinger is a genius.");
             
             System.out.println("Sample ratings initialized successfully!");
         }
@@ -0,0 +1,32 @@
+package com.bookstore.config;
+
+import com.bookstore.monitoring.InjectedDatabaseLatency;
+import com.bookstore.monitoring.JdbcTimingListener;
+import com.bookstore.monitoring.SqlCountingInspector;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Hooks the per-request SQL statement counter and JDBC timer into Hibernate,
+ * plus the injected statement latency used by load tests
+ */
+@Configuration
+public class SqlMonitoringConfig {
+
+    @Value("${bookstore.testing.db-latency:0ms}")
+    private Duration injectedLatency;
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlMonitoringCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlCountingInspector());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, JdbcTimingListener.class.getName());
+            InjectedDatabaseLatency.setLatency(injectedLatency);
+        };
+    }
+}
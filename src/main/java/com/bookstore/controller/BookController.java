@@ -1,22 +1,55 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.BookVersions;
+import com.bookstore.catalog.BookLeaderboards;
+import com.bookstore.catalog.FacetQuery;
+import com.bookstore.catalog.RangeQuery;
+import com.bookstore.feed.ChangeFeed;
 import com.bookstore.model.Book;
+import com.bookstore.model.BookLookup;
 import com.bookstore.model.Rating;
+import com.bookstore.model.RatingSummary;
+import com.bookstore.monitoring.SqlBudget;
+import com.bookstore.search.Suggestion;
+import com.bookstore.service.BookExportService;
+import com.bookstore.service.BookImportService;
 import com.bookstore.service.BookService;
+import com.bookstore.service.CursorPage;
+import com.bookstore.service.FacetPage;
+import com.bookstore.service.InsufficientStockException;
+import com.bookstore.service.RankedBook;
+import com.bookstore.service.RatingIngestionService;
+import com.bookstore.service.RatingQueueFullException;
 import com.bookstore.service.RatingService;
+import com.bookstore.service.StockReservationService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/books")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Next-Cursor", "Link", "ETag", "X-SQL-Statements", "X-SQL-Time-Ms", "X-SQL-Budget"})
 public class BookController {
     
     @Autowired
@@ -25,23 +58,101 @@ public class BookController {
     @Autowired
     private RatingService ratingService;
     
+    @Autowired
+    private BookExportService bookExportService;
+    
+    @Autowired
+    private BookImportService bookImportService;
+    
+    @Autowired
+    private BookVersions bookVersions;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private RatingIngestionService ratingIngestionService;
+    
+    @Autowired
+    private ChangeFeed changeFeed;
+    
+    @Value("${bookstore.pagination.default-limit:50}")
+    private int defaultPageSize;
+    
+    @Value("${bookstore.pagination.max-limit:500}")
+    private int maxPageSize;
+    
+    @Value("${bookstore.leaderboard.max-limit:100}")
+    private int maxLeaderboardSize;
+    
+    @Value("${bookstore.books.lookup.max-ids:1000}")
+    private int maxLookupIds;
+    
+    @Value("${bookstore.ratings.recent.capacity:100}")
+    private int recentRatingsCapacity;
+    
+    @Value("${bookstore.ratings.summary.max-ids:100}")
+    private int maxRatingSummaryIds;
+    
+    @Value("${bookstore.suggest.max-limit:20}")
+    private int maxSuggestions;
+    
     /**
-     * Get all books
+     * Get summaries of all books, one keyset-paginated window at a time.
+     * Answers 304 without touching the database while the catalog is unchanged.
      */
+    @SqlBudget(1)
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        List<Book> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getAllBooks(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         WebRequest request) {
+        String etag = catalogETag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        try {
+            return pageResponse(bookService.getBooksPage(cursor, pageSize(limit)), etag);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     
     /**
-     * Get book by ID
+     * Get book by ID.
+     * Answers 304 from the book cache while the book is unchanged; a missing book is a 404 without an ETag.
      */
+    @SqlBudget(1)
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
+    public ResponseEntity<Book> getBookById(@PathVariable Long id, WebRequest request) {
+        // Taken before the load, like catalogETag, so it is never newer than the body
+        String etag = bookETag("b", id);
         Optional<Book> book = bookService.getBookById(id);
-        return book.map(ResponseEntity::ok)
-                   .orElse(ResponseEntity.notFound().build());
+        if (book.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(book.get());
+    }
+    
+    /**
+     * Get many books by id in one round-trip: GET /api/books?ids=1,2,3.
+     * Results follow the order of ids, with found=false for ids that have no book.
+     */
+    @SqlBudget(1)
+    @GetMapping(params = "ids")
+    public ResponseEntity<?> getBooksByIds(@RequestParam List<Long> ids) {
+        return lookupResponse(ids);
+    }
+    
+    /**
+     * Same as GET /api/books?ids=..., taking the ids as a JSON array body for lists too long for a URL
+     */
+    @SqlBudget(1)
+    @PostMapping("/lookup")
+    public ResponseEntity<?> lookupBooks(@RequestBody List<Long> ids) {
+        return lookupResponse(ids);
     }
     
     /**
@@ -68,13 +179,15 @@ public class BookController {
     }
     
     /**
-     * Update an existing book
+     * Update an existing book, or answer 409 if its stock changed while the update was applied
      */
     @PutMapping("/{id}")
     public ResponseEntity<?> updateBook(@PathVariable Long id, @Valid @RequestBody Book bookDetails) {
         try {
             Book updatedBook = bookService.updateBook(id, bookDetails);
             return ResponseEntity.ok(updatedBook);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Book " + id + " was changed concurrently, retry the update");
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -94,21 +207,140 @@ public class BookController {
     }
     
     /**
-     * Search books by author or title
+     * Search books by author or title, returning summaries; fuzzy=true tolerates typos
      */
+    @SqlBudget(2)
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String q) {
-        List<Book> books = bookService.searchBooks(q);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> searchBooks(@RequestParam String q,
+                                         @RequestParam(defaultValue = "false") boolean fuzzy,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit) {
+        try {
+            return pageResponse(bookService.searchBooksPage(q, fuzzy, cursor, pageSize(limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     
     /**
-     * Get books by author
+     * Typeahead: titles and authors with a word starting with the prefix, most rated
+     * first. Served from an in-memory index; limit is capped at bookstore.suggest.max-limit.
+     */
+    @SqlBudget(1)
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(@RequestParam String prefix,
+                                     @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isBlank()) {
+            return ResponseEntity.badRequest().body("Prefix is required");
+        }
+        try {
+            List<Suggestion> suggestions = bookService.suggest(prefix, Math.max(1, Math.min(limit, maxSuggestions)));
+            return ResponseEntity.ok(suggestions);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Filter books by any combination of author, publication decade, price band and
+     * stock, and count the matches for every facet value. Repeat a parameter to OR its
+     * values (author=A&author=B); different parameters are AND'ed. Served from
+     * in-memory bitmap indexes; results are summaries paginated like /api/books.
+     */
+    @SqlBudget(1)
+    @GetMapping("/facets")
+    public ResponseEntity<?> getFacets(@RequestParam(required = false) List<Integer> decade,
+                                       @RequestParam(required = false) List<String> price,
+                                       @RequestParam(required = false) Boolean inStock,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestParam(defaultValue = "20") int facetLimit,
+                                       WebRequest request) {
+        // Read raw so an author containing a comma is not split into two values
+        String[] authors = request.getParameterValues("author");
+        FacetQuery query = new FacetQuery(authors != null ? List.of(authors) : null, decade, price, inStock);
+        try {
+            FacetPage page = bookService.getFacetPage(query, cursor, pageSize(limit),
+                    Math.max(1, Math.min(facetLimit, maxPageSize)));
+            return windowResponse(page, page.getNextCursor(), null);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Get summaries of books within a price and publication-year range (bounds inclusive,
+     * each optional), sorted by price, year, rating or created_at, ascending or descending.
+     * Served from in-memory sorted indexes; paginated like /api/books.
+     */
+    @SqlBudget(1)
+    @GetMapping("/range")
+    public ResponseEntity<?> getBooksInRange(@RequestParam(required = false) BigDecimal minPrice,
+                                             @RequestParam(required = false) BigDecimal maxPrice,
+                                             @RequestParam(required = false) Integer minYear,
+                                             @RequestParam(required = false) Integer maxYear,
+                                             @RequestParam(defaultValue = "price") String sort,
+                                             @RequestParam(defaultValue = "asc") String order,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        RangeQuery.Sort sortKey;
+        try {
+            sortKey = RangeQuery.Sort.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unknown sort: " + sort + " (use price, year, rating or created_at)");
+        }
+        if (!"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+            return ResponseEntity.badRequest().body("Unknown order: " + order + " (use asc or desc)");
+        }
+        try {
+            RangeQuery query = new RangeQuery(minPrice, maxPrice, minYear, maxYear, sortKey,
+                    "desc".equalsIgnoreCase(order));
+            return pageResponse(bookService.getRangePage(query, cursor, pageSize(limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Get the top books by Bayesian-adjusted rating, rating count or ratings in the trending window.
+     * Served from in-memory leaderboards.
+     */
+    @SqlBudget(1)
+    @GetMapping("/top")
+    public ResponseEntity<?> getTopBooks(@RequestParam(defaultValue = "rating") String by,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        BookLeaderboards.Board board;
+        try {
+            board = BookLeaderboards.Board.valueOf(by.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unknown leaderboard: " + by + " (use rating, count or trending)");
+        }
+        List<RankedBook> top = bookService.getTopBooks(board, Math.max(1, Math.min(limit, maxLeaderboardSize)));
+        return ResponseEntity.ok(top);
+    }
+    
+    /**
+     * Get summaries of books by author
      */
     @GetMapping("/author/{author}")
-    public ResponseEntity<List<Book>> getBooksByAuthor(@PathVariable String author) {
-        List<Book> books = bookService.getBooksByAuthor(author);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getBooksByAuthor(@PathVariable String author,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit) {
+        try {
+            return pageResponse(bookService.getBooksByAuthorPage(author, cursor, pageSize(limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     
     /**
@@ -121,31 +353,135 @@ public class BookController {
     }
     
     /**
-     * Get books in stock
+     * Get summaries of books in stock
      */
     @GetMapping("/in-stock")
-    public ResponseEntity<List<Book>> getBooksInStock() {
-        List<Book> books = bookService.getBooksInStock();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getBooksInStock(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        try {
+            return pageResponse(bookService.getBooksInStockPage(cursor, pageSize(limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     
     /**
-     * Update stock quantity
+     * Bulk import books from a streamed JSON array, NDJSON or CSV body.
+     * Invalid or duplicate rows are reported individually and do not stop the load.
+     */
+    @PostMapping(value = "/import", consumes = {
+            MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                         InputStream body) {
+        try {
+            if (contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))) {
+                return ResponseEntity.ok(bookImportService.importCsv(body));
+            }
+            return ResponseEntity.ok(bookImportService.importJson(body));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Could not read import body: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Stream the whole catalog as NDJSON (default) or CSV
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "ndjson") String format) {
+        StreamingResponseBody body;
+        MediaType contentType;
+        if ("ndjson".equalsIgnoreCase(format)) {
+            body = bookExportService::exportNdjson;
+            contentType = MediaType.APPLICATION_NDJSON;
+        } else if ("csv".equalsIgnoreCase(format)) {
+            body = bookExportService::exportCsv;
+            contentType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+        } else {
+            byte[] message = ("Unsupported export format: " + format).getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(message));
+        }
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books." + format.toLowerCase() + "\"")
+                .body(body);
+    }
+    
+    /**
+     * Update stock quantity, or answer 409 if a reservation changed it meanwhile
      */
     @PatchMapping("/{id}/stock")
     public ResponseEntity<?> updateStock(@PathVariable Long id, @RequestParam Integer quantity) {
         try {
             Book updatedBook = bookService.updateStock(id, quantity);
             return ResponseEntity.ok(updatedBook);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Book " + id + " was changed concurrently, retry the update");
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
     
+    /**
+     * Reserve stock: atomically take quantity units, or answer 409 if fewer are in stock
+     */
+    @PostMapping("/{id}/stock/reserve")
+    public ResponseEntity<?> reserveStock(@PathVariable Long id, @RequestParam Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            return ResponseEntity.badRequest().body("Quantity must be positive");
+        }
+        try {
+            return ResponseEntity.ok(stockReservationService.reserve(id, quantity));
+        } catch (InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Release stock: atomically return quantity previously reserved units
+     */
+    @PostMapping("/{id}/stock/release")
+    public ResponseEntity<?> releaseStock(@PathVariable Long id, @RequestParam Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            return ResponseEntity.badRequest().body("Quantity must be positive");
+        }
+        try {
+            return ResponseEntity.ok(stockReservationService.release(id, quantity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    // Change feed endpoints
+    
+    /**
+     * Server-Sent Events stream of stock, price and rating changes across the catalog
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter catalogEvents() {
+        return changeFeed.subscribe(null);
+    }
+    
+    /**
+     * Server-Sent Events stream of changes to one book
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> bookEvents(@PathVariable Long id) {
+        if (bookService.getBookById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(changeFeed.subscribe(id));
+    }
+    
     // Rating endpoints
     
     /**
-     * Add a rating for a book
+     * Add a rating for a book.
+     * In write-behind mode the rating is queued and 202 Accepted is returned; it is
+     * written shortly after, and 503 means the queue is full and the client should retry.
      */
     @PostMapping("/{id}/ratings")
     public ResponseEntity<?> addRating(@PathVariable Long id, @RequestBody Map<String, Object> ratingData) {
@@ -162,20 +498,35 @@ public class BookController {
                 return ResponseEntity.badRequest().body("Reviewer name is required");
             }
             
+            if (ratingIngestionService.isEnabled()) {
+                return ResponseEntity.accepted()
+                        .body(ratingIngestionService.submit(id, rating, reviewerName, comment));
+            }
+            
             Rating newRating = ratingService.addRating(id, rating, reviewerName, comment);
             return ResponseEntity.status(HttpStatus.CREATED).body(newRating);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RatingQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
         }
     }
     
     /**
-     * Get all ratings for a book
+     * Get all ratings for a book.
+     * Answers 304 without touching the database while the book's ratings are unchanged.
      */
+    @SqlBudget(1)
     @GetMapping("/{id}/ratings")
-    public ResponseEntity<List<Rating>> getBookRatings(@PathVariable Long id) {
+    public ResponseEntity<List<Rating>> getBookRatings(@PathVariable Long id, WebRequest request) {
+        String etag = bookETag("r", id);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         List<Rating> ratings = ratingService.getRatingsByBookId(id);
-        return ResponseEntity.ok(ratings);
+        return ResponseEntity.ok().eTag(etag).body(ratings);
     }
     
     /**
@@ -196,6 +547,26 @@ public class BookController {
         return ResponseEntity.ok(count);
     }
     
+    /**
+     * Get the average, count and star histogram of the ratings of many books with one query.
+     * Results come back in the order of ids, duplicates removed; at most
+     * bookstore.ratings.summary.max-ids books per request.
+     */
+    @SqlBudget(1)
+    @GetMapping("/ratings/summary")
+    public ResponseEntity<?> getRatingSummaries(@RequestParam List<Long> ids) {
+        Set<Long> bookIds = new LinkedHashSet<>(ids);
+        bookIds.remove(null);
+        if (bookIds.isEmpty()) {
+            return ResponseEntity.badRequest().body("At least one book id is required");
+        }
+        if (bookIds.size() > maxRatingSummaryIds) {
+            return ResponseEntity.badRequest().body("At most " + maxRatingSummaryIds + " book ids are allowed");
+        }
+        List<RatingSummary> summaries = ratingService.getRatingSummaries(bookIds);
+        return ResponseEntity.ok(summaries);
+    }
+    
     /**
      * Update a rating
      */
@@ -230,11 +601,77 @@ public class BookController {
     }
     
     /**
-     * Get recent ratings across all books
+     * Get recent ratings across all books, newest first.
+     * Served from memory; limit is capped at bookstore.ratings.recent.capacity.
      */
+    @SqlBudget(1)
     @GetMapping("/ratings/recent")
-    public ResponseEntity<List<Rating>> getRecentRatings() {
-        List<Rating> recentRatings = ratingService.getRecentRatings();
+    public ResponseEntity<List<Rating>> getRecentRatings(@RequestParam(defaultValue = "10") int limit) {
+        int capped = Math.max(1, Math.min(limit, recentRatingsCapacity));
+        List<Rating> recentRatings = ratingService.getRecentRatings(capped);
         return ResponseEntity.ok(recentRatings);
     }
+    
+    private ResponseEntity<?> lookupResponse(List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.contains(null)) {
+            return ResponseEntity.badRequest().body("Book ids are required");
+        }
+        if (ids.size() > maxLookupIds) {
+            return ResponseEntity.badRequest().body("At most " + maxLookupIds + " book ids are allowed");
+        }
+        List<BookLookup> books = bookService.getBooksByIds(ids);
+        return ResponseEntity.ok(books);
+    }
+    
+    /**
+     * Clamp a requested page size to the configured bounds
+     */
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+    
+    /**
+     * Return a window as a plain JSON array; the continuation cursor travels in
+     * the X-Next-Cursor header and a Link rel="next" header pointing at the next window
+     */
+    private <T> ResponseEntity<List<T>> pageResponse(CursorPage<T> page) {
+        return pageResponse(page, null);
+    }
+    
+    private <T> ResponseEntity<List<T>> pageResponse(CursorPage<T> page, String etag) {
+        return windowResponse(page.getItems(), page.getNextCursor(), etag);
+    }
+    
+    private <T> ResponseEntity<T> windowResponse(T body, String nextCursor, String etag) {
+        if (nextCursor == null) {
+            return ResponseEntity.ok().eTag(etag).body(body);
+        }
+        String nextUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", nextCursor)
+                .toUriString();
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header("X-Next-Cursor", nextCursor)
+                .header(HttpHeaders.LINK, "<" + nextUri + ">; rel=\"next\"")
+                .body(body);
+    }
+    
+    /**
+     * Strong ETag for the whole catalog, taken before any data is loaded. Versions are
+     * bumped only after the caches have seen a write, so a write racing the load can
+     * only make the tag older than the body, never newer.
+     */
+    private String catalogETag() {
+        return "\"c" + bookVersions.getEpoch() + "." + bookVersions.catalogVersion() + "\"";
+    }
+    
+    /**
+     * Strong ETag for a resource that changes with one book (kind tells the resources apart)
+     */
+    private String bookETag(String kind, Long id) {
+        return "\"" + kind + bookVersions.getEpoch() + "." + id + "." + bookVersions.bookVersion(id) + "\"";
+    }
 }
@@ -1,7 +1,11 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.BookVersions;
 import com.bookstore.model.Book;
+import com.bookstore.monitoring.SqlBudget;
 import com.bookstore.service.BookService;
+import com.bookstore.view.BookFragmentCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +19,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import static com.bookstore.view.HtmlEscaper.escapeHtml;
+
 /**
  * Root Controller - Handles root path requests
  * 
@@ -36,15 +42,64 @@ public class RootController {
     @Value("${info.app.author:Suresh Gaikwad}")
     private String appAuthor;
 
+    @Value("${bookstore.render.card-cache-size:10000}")
+    private long cardCacheSize;
+
+    @Autowired
+    private BookVersions bookVersions;
+
+    private static final String EMPTY_CATALOG =
+            "<div class='text-center py-5'>" +
+            "<i class='fas fa-book fa-5x text-muted mb-4'></i>" +
+            "<h3>No Books Available</h3>" +
+            "<p class='text-muted'>Our bookstore is currently empty. Please check back later!</p>" +
+            "</div>";
+
+    private String pageHead;
+
+    private String pageFooter;
+
+    private BookFragmentCache bookCards;
+
     /**
-     * Root endpoint - serves beautiful bookstore web UI with book listings
+     * Root endpoint - serves beautiful bookstore web UI with book listings.
+     * The static page chrome is built once and each book card comes pre-rendered
+     * from the fragment cache, so a request is mostly string concatenation.
      */
+    @SqlBudget(1)
     @GetMapping(value = "/", produces = "text/html")
     @ResponseBody
     public String rootPage() {
+        long catalogVersion = bookVersions.catalogVersion();
         List<Book> books = bookService.getAllBooks();
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(Locale.US);
         
+        StringBuilder html = new StringBuilder(pageHead.length() + pageFooter.length() + books.size() * 1536);
+        html.append(pageHead);
+        
+        if (books.isEmpty()) {
+            html.append(EMPTY_CATALOG);
+        } else {
+            html.append("<div class='d-flex justify-content-between align-items-center mb-4'>");
+            html.append("<h2><i class='fas fa-books'></i> Our Book Collection</h2>");
+            html.append("<span class='badge bg-primary fs-6'>").append(books.size()).append(" books available</span>");
+            html.append("</div>");
+            
+            html.append("<div class='row g-4'>");
+            for (Book book : books) {
+                html.append(bookCards.get(book, catalogVersion));
+            }
+            html.append("</div>");
+        }
+        
+        html.append(pageFooter);
+        return html.toString();
+    }
+    
+    /**
+     * Builds the parts of the page that only depend on configuration
+     */
+    @PostConstruct
+    void buildPageChrome() {
         StringBuilder html = new StringBuilder();
         html.append("<!DOCTYPE html>");
         html.append("<html lang='en'>");
@@ -91,92 +146,9 @@ public class RootController {
         
         // Main Content
         html.append("<div class='container my-5'>");
+        pageHead = html.toString();
         
-        if (books.isEmpty()) {
-            html.append("<div class='text-center py-5'>");
-            html.append("<i class='fas fa-book fa-5x text-muted mb-4'></i>");
-            html.append("<h3>No Books Available</h3>");
-            html.append("<p class='text-muted'>Our bookstore is currently empty. Please check back later!</p>");
-            html.append("</div>");
-        } else {
-            html.append("<div class='d-flex justify-content-between align-items-center mb-4'>");
-            html.append("<h2><i class='fas fa-books'></i> Our Book Collection</h2>");
-            html.append("<span class='badge bg-primary fs-6'>").append(books.size()).append(" books available</span>");
-            html.append("</div>");
-            
-            html.append("<div class='row g-4'>");
-            
-            for (Book book : books) {
-                html.append("<div class='col-lg-4 col-md-6'>");
-                html.append("<div class='card h-100 book-card border-0 shadow-sm'>");
-                html.append("<div class='card-body d-flex flex-column'>");
-                
-                // Book Title
-                html.append("<h5 class='card-title text-primary mb-2'>");
-                html.append("<i class='fas fa-book'></i> ").append(escapeHtml(book.getTitle()));
-                html.append("</h5>");
-                
-                // Author
-                html.append("<h6 class='card-subtitle mb-3 text-muted'>");
-                html.append("<i class='fas fa-user'></i> by ").append(escapeHtml(book.getAuthor()));
-                html.append("</h6>");
-                
-                // Description
-                if (book.getDescription() != null && !book.getDescription().isEmpty()) {
-                    String description = book.getDescription();
-                    if (description.length() > 120) {
-                        description = description.substring(0, 117) + "...";
-                    }
-                    html.append("<p class='card-text flex-grow-1'>").append(escapeHtml(description)).append("</p>");
-                }
-                
-                // Book Details
-                html.append("<div class='mt-auto'>");
-                html.append("<div class='row g-2 mb-3'>");
-                
-                // Price
-                html.append("<div class='col-6'>");
-                html.append("<div class='book-price text-success'>");
-                html.append("<i class='fas fa-dollar-sign'></i> ").append(currencyFormat.format(book.getPrice()));
-                html.append("</div>");
-                html.append("</div>");
-                
-                // Stock
-                html.append("<div class='col-6 text-end'>");
-                if (book.getStockQuantity() != null && book.getStockQuantity() > 0) {
-                    String stockClass = book.getStockQuantity() > 10 ? "text-success" : 
-                                       book.getStockQuantity() > 5 ? "text-warning" : "text-danger";
-                    html.append("<span class='book-stock ").append(stockClass).append("'>");
-                    html.append("<i class='fas fa-boxes'></i> ").append(book.getStockQuantity()).append(" in stock");
-                    html.append("</span>");
-                } else {
-                    html.append("<span class='book-stock text-danger'>");
-                    html.append("<i class='fas fa-times-circle'></i> Out of stock");
-                    html.append("</span>");
-                }
-                html.append("</div>");
-                html.append("</div>");
-                
-                // Additional Info
-                html.append("<div class='d-flex justify-content-between align-items-center'>");
-                html.append("<small class='text-muted'>");
-                if (book.getPublicationYear() != null) {
-                    html.append("<i class='fas fa-calendar'></i> ").append(book.getPublicationYear());
-                }
-                html.append("</small>");
-                html.append("<small class='text-muted'>");
-                html.append("<i class='fas fa-barcode'></i> ").append(escapeHtml(book.getIsbn()));
-                html.append("</small>");
-                html.append("</div>");
-                
-                html.append("</div>");
-                html.append("</div>");
-                html.append("</div>");
-                html.append("</div>");
-            }
-            html.append("</div>");
-        }
-        
+        html = new StringBuilder();
         // API Section
         html.append("<hr class='my-5'>");
         html.append("<div class='row'>");
@@ -222,22 +194,86 @@ public class RootController {
         html.append("<script src='https://cdn.jsdelivr.net/npm/bootstrap@5.3.0/dist/js/bootstrap.bundle.min.js'></script>");
         html.append("</body>");
         html.append("</html>");
+        pageFooter = html.toString();
         
-        return html.toString();
+        bookCards = new BookFragmentCache(bookVersions, cardCacheSize, this::renderBookCard);
     }
     
     /**
-     * Escapes HTML special characters to prevent XSS
+     * Renders the card for one book; only called when the cached card is missing or stale
      */
-    private String escapeHtml(String input) {
-        if (input == null) return "";
-        return input.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&#x27;");
+    private String renderBookCard(Book book) {
+        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(Locale.US);
+        StringBuilder card = new StringBuilder(1536);
+        card.append("<div class='col-lg-4 col-md-6'>");
+        card.append("<div class='card h-100 book-card border-0 shadow-sm'>");
+        card.append("<div class='card-body d-flex flex-column'>");
+        
+        // Book Title
+        card.append("<h5 class='card-title text-primary mb-2'>");
+        card.append("<i class='fas fa-book'></i> ").append(escapeHtml(book.getTitle()));
+        card.append("</h5>");
+        
+        // Author
+        card.append("<h6 class='card-subtitle mb-3 text-muted'>");
+        card.append("<i class='fas fa-user'></i> by ").append(escapeHtml(book.getAuthor()));
+        card.append("</h6>");
+        
+        // Description
+        if (book.getDescription() != null && !book.getDescription().isEmpty()) {
+            String description = book.getDescription();
+            if (description.length() > 120) {
+                description = description.substring(0, 117) + "...";
+            }
+            card.append("<p class='card-text flex-grow-1'>").append(escapeHtml(description)).append("</p>");
+        }
+        
+        // Book Details
+        card.append("<div class='mt-auto'>");
+        card.append("<div class='row g-2 mb-3'>");
+        
+        // Price
+        card.append("<div class='col-6'>");
+        card.append("<div class='book-price text-success'>");
+        card.append("<i class='fas fa-dollar-sign'></i> ").append(currencyFormat.format(book.getPrice()));
+        card.append("</div>");
+        card.append("</div>");
+        
+        // Stock
+        card.append("<div class='col-6 text-end'>");
+        if (book.getStockQuantity() != null && book.getStockQuantity() > 0) {
+            String stockClass = book.getStockQuantity() > 10 ? "text-success" : 
+                               book.getStockQuantity() > 5 ? "text-warning" : "text-danger";
+            card.append("<span class='book-stock ").append(stockClass).append("'>");
+            card.append("<i class='fas fa-boxes'></i> ").append(book.getStockQuantity()).append(" in stock");
+            card.append("</span>");
+        } else {
+            card.append("<span class='book-stock text-danger'>");
+            card.append("<i class='fas fa-times-circle'></i> Out of stock");
+            card.append("</span>");
+        }
+        card.append("</div>");
+        card.append("</div>");
+        
+        // Additional Info
+        card.append("<div class='d-flex justify-content-between align-items-center'>");
+        card.append("<small class='text-muted'>");
+        if (book.getPublicationYear() != null) {
+            card.append("<i class='fas fa-calendar'></i> ").append(book.getPublicationYear());
+        }
+        card.append("</small>");
+        card.append("<small class='text-muted'>");
+        card.append("<i class='fas fa-barcode'></i> ").append(escapeHtml(book.getIsbn()));
+        card.append("</small>");
+        card.append("</div>");
+        
+        card.append("</div>");
+        card.append("</div>");
+        card.append("</div>");
+        card.append("</div>");
+        return card.toString();
     }
-
+    
     /**
      * API info endpoint - provides application information and available endpoints
      */
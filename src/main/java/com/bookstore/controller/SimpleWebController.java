@@ -1,8 +1,13 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.BookVersions;
 import com.bookstore.model.Book;
+import com.bookstore.monitoring.SqlBudget;
 import com.bookstore.service.BookService;
+import com.bookstore.view.BookFragmentCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,6 +15,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.util.List;
 
+import static com.bookstore.view.HtmlEscaper.escapeHtml;
+
 /**
  * Simple Web Controller - Basic HTML without Thymeleaf for testing
  * 
@@ -19,14 +26,63 @@ import java.util.List;
 @Controller
 public class SimpleWebController {
 
+    private static final String PAGE_HEAD = buildPageHead();
+    
+    private static final String PAGE_FOOTER = buildPageFooter();
+    
+    private static final String EMPTY_CATALOG =
+            "<div class='alert alert-info'>" +
+            "<h4>No books found</h4>" +
+            "<p>The bookstore is empty. Add some books via the API:</p>" +
+            "<pre>curl -X POST http://your-url/api/books -H 'Content-Type: application/json' -d '{...}'</pre>" +
+            "</div>";
+
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private BookVersions bookVersions;
+
+    @Value("${bookstore.render.card-cache-size:10000}")
+    private long cardCacheSize;
+
+    private BookFragmentCache bookCards;
+
+    /**
+     * Simple book list. The static page chrome is built once and each book card
+     * comes pre-rendered from the fragment cache.
+     */
+    @SqlBudget(1)
     @GetMapping(value = "/simple", produces = MediaType.TEXT_HTML_VALUE)
     @ResponseBody
     public String simpleBookList() {
+        long catalogVersion = bookVersions.catalogVersion();
         List<Book> books = bookService.getAllBooks();
         
+        StringBuilder html = new StringBuilder(PAGE_HEAD.length() + PAGE_FOOTER.length() + books.size() * 1024);
+        html.append(PAGE_HEAD);
+        
+        if (books.isEmpty()) {
+            html.append(EMPTY_CATALOG);
+        } else {
+            html.append("<h2>Available Books (").append(books.size()).append(")</h2>");
+            html.append("<div class='row'>");
+            for (Book book : books) {
+                html.append(bookCards.get(book, catalogVersion));
+            }
+            html.append("</div>");
+        }
+        
+        html.append(PAGE_FOOTER);
+        return html.toString();
+    }
+    
+    @PostConstruct
+    void initCardCache() {
+        bookCards = new BookFragmentCache(bookVersions, cardCacheSize, SimpleWebController::renderBookCard);
+    }
+    
+    private static String buildPageHead() {
         StringBuilder html = new StringBuilder();
         html.append("<!DOCTYPE html>");
         html.append("<html>");
@@ -54,56 +110,11 @@ public class SimpleWebController {
         html.append("<h1>Bookstore Application</h1>");
         html.append("<p class='text-muted'>Created for Java event</p>");
         html.append("<hr>");
-        
-        if (books.isEmpty()) {
-            html.append("<div class='alert alert-info'>");
-            html.append("<h4>No books found</h4>");
-            html.append("<p>The bookstore is empty. Add some books via the API:</p>");
-            html.append("<pre>curl -X POST http://your-url/api/books -H 'Content-Type: application/json' -d '{...}'</pre>");
-            html.append("</div>");
-        } else {
-            html.append("<h2>Available Books (" + books.size() + ")</h2>");
-            html.append("<div class='row'>");
-            
-            for (Book book : books) {
-                html.append("<div class='col-md-4 mb-3'>");
-                html.append("<div class='card'>");
-                html.append("<div class='card-body'>");
-                html.append("<h5 class='card-title'>").append(escapeHtml(book.getTitle())).append("</h5>");
-                html.append("<h6 class='card-subtitle mb-2 text-muted'>by ").append(escapeHtml(book.getAuthor())).append("</h6>");
-                
-                if (book.getDescription() != null && !book.getDescription().isEmpty()) {
-                    String desc = book.getDescription();
-                    if (desc.length() > 100) {
-                        desc = desc.substring(0, 97) + "...";
-                    }
-                    html.append("<p class='card-text'>").append(escapeHtml(desc)).append("</p>");
-                }
-                
-                html.append("<div class='d-flex justify-content-between align-items-center'>");
-                html.append("<span class='badge bg-success'>$").append(book.getPrice()).append("</span>");
-                
-                if (book.getStockQuantity() != null && book.getStockQuantity() > 0) {
-                    html.append("<span class='badge bg-primary'>").append(book.getStockQuantity()).append(" in stock</span>");
-                } else {
-                    html.append("<span class='badge bg-danger'>Out of stock</span>");
-                }
-                html.append("</div>");
-                
-                html.append("<div class='mt-2'>");
-                html.append("<small class='text-muted'>ISBN: ").append(escapeHtml(book.getIsbn())).append("</small>");
-                if (book.getPublicationYear() != null) {
-                    html.append("<br><small class='text-muted'>Published: ").append(book.getPublicationYear()).append("</small>");
-                }
-                html.append("</div>");
-                
-                html.append("</div>");
-                html.append("</div>");
-                html.append("</div>");
-            }
-            html.append("</div>");
-        }
-        
+        return html.toString();
+    }
+    
+    private static String buildPageFooter() {
+        StringBuilder html = new StringBuilder();
         // API Links
         html.append("<hr>");
         html.append("<h3>API Endpoints</h3>");
@@ -138,16 +149,48 @@ public class SimpleWebController {
         html.append("<script src='https://cdn.jsdelivr.net/npm/bootstrap@5.3.0/dist/js/bootstrap.bundle.min.js'></script>");
         html.append("</body>");
         html.append("</html>");
-        
         return html.toString();
     }
     
-    private String escapeHtml(String input) {
-        if (input == null) return "";
-        return input.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&#x27;");
+    /**
+     * Renders the card for one book; only called when the cached card is missing or stale
+     */
+    private static String renderBookCard(Book book) {
+        StringBuilder card = new StringBuilder(1024);
+        card.append("<div class='col-md-4 mb-3'>");
+        card.append("<div class='card'>");
+        card.append("<div class='card-body'>");
+        card.append("<h5 class='card-title'>").append(escapeHtml(book.getTitle())).append("</h5>");
+        card.append("<h6 class='card-subtitle mb-2 text-muted'>by ").append(escapeHtml(book.getAuthor())).append("</h6>");
+        
+        if (book.getDescription() != null && !book.getDescription().isEmpty()) {
+            String desc = book.getDescription();
+            if (desc.length() > 100) {
+                desc = desc.substring(0, 97) + "...";
+            }
+            card.append("<p class='card-text'>").append(escapeHtml(desc)).append("</p>");
+        }
+        
+        card.append("<div class='d-flex justify-content-between align-items-center'>");
+        card.append("<span class='badge bg-success'>$").append(book.getPrice()).append("</span>");
+        
+        if (book.getStockQuantity() != null && book.getStockQuantity() > 0) {
+            card.append("<span class='badge bg-primary'>").append(book.getStockQuantity()).append(" in stock</span>");
+        } else {
+            card.append("<span class='badge bg-danger'>Out of stock</span>");
+        }
+        card.append("</div>");
+        
+        card.append("<div class='mt-2'>");
+        card.append("<small class='text-muted'>ISBN: ").append(escapeHtml(book.getIsbn())).append("</small>");
+        if (book.getPublicationYear() != null) {
+            card.append("<br><small class='text-muted'>Published: ").append(book.getPublicationYear()).append("</small>");
+        }
+        card.append("</div>");
+        
+        card.append("</div>");
+        card.append("</div>");
+        card.append("</div>");
+        return card.toString();
     }
 }
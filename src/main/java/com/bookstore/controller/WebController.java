@@ -1,6 +1,7 @@
 package com.bookstore.controller;
 
 import com.bookstore.model.Book;
+import com.bookstore.monitoring.SqlBudget;
 import com.bookstore.service.BookService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -27,6 +28,7 @@ public class WebController {
     /**
      * Home page - displays all books
      */
+    @SqlBudget(1)
     @GetMapping("/")
     public String home(Model model) {
         List<Book> books = bookService.getAllBooks();
@@ -0,0 +1,61 @@
+package com.bookstore.event;
+
+import com.bookstore.model.Book;
+
+/**
+ * Published by BookService after a book has been created, updated or deleted.
+ * Listeners use it to keep in-memory views of the catalog in step with the database.
+ */
+public class BookChangedEvent {
+    
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+    
+    private final Type type;
+    private final Long bookId;
+    private final Book book;
+    
+    public BookChangedEvent(Type type, Long bookId, Book book) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+    }
+    
+    public static BookChangedEvent created(Book book) {
+        return new BookChangedEvent(Type.CREATED, book.getId(), book);
+    }
+    
+    public static BookChangedEvent updated(Book book) {
+        return new BookChangedEvent(Type.UPDATED, book.getId(), book);
+    }
+    
+    public static BookChangedEvent deleted(Book book) {
+        return new BookChangedEvent(Type.DELETED, book.getId(), book);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public Long getBookId() {
+        return bookId;
+    }
+    
+    /**
+     * The book as saved; for DELETED events, the state it had before removal
+     */
+    public Book getBook() {
+        return book;
+    }
+    
+    @Override
+    public String toString() {
+        return "BookChangedEvent{" +
+                "type=" + type +
+                ", bookId=" + bookId +
+                '}';
+    }
+}
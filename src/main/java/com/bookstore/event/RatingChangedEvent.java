@@ -0,0 +1,62 @@
+package com.bookstore.event;
+
+import com.bookstore.model.Rating;
+
+/**
+ * Published by RatingService after a rating has been added, updated or deleted.
+ * Any of these changes the rating aggregates of the rated book.
+ */
+public class RatingChangedEvent {
+    
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+    
+    private final Type type;
+    private final Long bookId;
+    private final Rating rating;
+    private final Integer previousValue;
+    
+    public RatingChangedEvent(Type type, Long bookId, Rating rating) {
+        this(type, bookId, rating, null);
+    }
+    
+    public RatingChangedEvent(Type type, Long bookId, Rating rating, Integer previousValue) {
+        this.type = type;
+        this.bookId = bookId;
+        this.rating = rating;
+        this.previousValue = previousValue;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public Long getBookId() {
+        return bookId;
+    }
+    
+    /**
+     * The rating as saved; for DELETED events, the state it had before removal
+     */
+    public Rating getRating() {
+        return rating;
+    }
+    
+    /**
+     * For UPDATED events, the rating value before the change; otherwise null
+     */
+    public Integer getPreviousValue() {
+        return previousValue;
+    }
+    
+    @Override
+    public String toString() {
+        return "RatingChangedEvent{" +
+                "type=" + type +
+                ", bookId=" + bookId +
+                '}';
+    }
+}
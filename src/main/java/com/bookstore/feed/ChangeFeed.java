@@ -0,0 +1,257 @@
+package com.bookstore.feed;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Server-Sent Events feed of committed book and rating changes, per book or catalog-wide.
+ *
+ * Connections are held as async SseEmitters, so an idle subscriber costs no
+ * thread. Changes are queued on each interested subscriber and written by a
+ * small dispatcher pool, never by the thread that committed the change. While
+ * a subscriber reads slowly its changes are coalesced in its queue (see
+ * FeedSubscriber), but a client that stops reading blocks the dispatcher thread
+ * writing to it. Such writes are checked for periodically: a subscriber whose
+ * write has not completed within bookstore.feed.write-timeout is dropped, and
+ * the pool gets an extra thread until the blocked one returns, so the other
+ * subscribers keep being served. A periodic heartbeat keeps proxies from
+ * closing idle connections and detects clients that have gone away.
+ */
+@Component
+public class ChangeFeed {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookstore.feed.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${bookstore.feed.heartbeat:25s}")
+    private Duration heartbeat;
+
+    @Value("${bookstore.feed.max-pending:256}")
+    private int maxPending;
+
+    @Value("${bookstore.feed.dispatch-threads:2}")
+    private int dispatchThreads;
+
+    @Value("${bookstore.feed.write-timeout:10s}")
+    private Duration writeTimeout;
+
+    private final Set<FeedSubscriber> catalogSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<FeedSubscriber>> bookSubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private ThreadPoolExecutor dispatcher;
+    private ScheduledExecutorService heartbeats;
+    private Counter dropped;
+    private Counter stalled;
+
+    // Dispatcher threads blocked writing to subscribers that have been dropped; guarded by this
+    private int blockedThreads = 0;
+
+    @PostConstruct
+    void init() {
+        dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("feed-dispatch-"));
+        heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("feed-heartbeat-"));
+        heartbeats.scheduleAtFixedRate(this::sendHeartbeats,
+                heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(1, writeTimeout.toMillis() / 4);
+        heartbeats.scheduleAtFixedRate(this::dropStalledSubscribers, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        Gauge.builder("bookstore.feed.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open change feed connections")
+                .register(meterRegistry);
+        dropped = Counter.builder("bookstore.feed.dropped")
+                .description("Change events dropped for subscribers too far behind, replaced by a resync")
+                .register(meterRegistry);
+        stalled = Counter.builder("bookstore.feed.stalled")
+                .description("Subscribers dropped because a write to them did not complete within the write timeout")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open a feed of changes to one book, or to every book when bookId is null
+     */
+    public SseEmitter subscribe(Long bookId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        FeedSubscriber subscriber = new FeedSubscriber(emitter, bookId, maxPending);
+        Runnable unsubscribe = () -> unsubscribe(subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        if (bookId == null) {
+            catalogSubscribers.add(subscriber);
+        } else {
+            // compute() is atomic per key, so this cannot race with unsubscribe() dropping an empty set
+            bookSubscribers.compute(bookId, (id, subscribers) -> {
+                Set<FeedSubscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                set.add(subscriber);
+                return set;
+            });
+        }
+        subscriberCount.incrementAndGet();
+        // An immediate comment commits the response, so clients and proxies see the stream open
+        subscriber.heartbeat();
+        dispatch(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Notify subscribers of a committed book change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        publish(FeedEvent.of(event));
+    }
+
+    /**
+     * Notify subscribers of a committed rating change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        publish(FeedEvent.of(event));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeats.shutdownNow();
+        dispatcher.shutdownNow();
+        for (FeedSubscriber subscriber : catalogSubscribers) {
+            subscriber.getEmitter().complete();
+        }
+        for (Set<FeedSubscriber> subscribers : bookSubscribers.values()) {
+            for (FeedSubscriber subscriber : subscribers) {
+                subscriber.getEmitter().complete();
+            }
+        }
+    }
+
+    private void publish(FeedEvent event) {
+        for (FeedSubscriber subscriber : catalogSubscribers) {
+            deliver(subscriber, event);
+        }
+        Set<FeedSubscriber> subscribers = bookSubscribers.get(event.getBookId());
+        if (subscribers != null) {
+            for (FeedSubscriber subscriber : subscribers) {
+                deliver(subscriber, event);
+            }
+        }
+    }
+
+    private void deliver(FeedSubscriber subscriber, FeedEvent event) {
+        int droppedEvents = subscriber.offer(event);
+        if (droppedEvents > 0) {
+            dropped.increment(droppedEvents);
+        }
+        dispatch(subscriber);
+    }
+
+    private void sendHeartbeats() {
+        forEachSubscriber(subscriber -> {
+            subscriber.heartbeat();
+            dispatch(subscriber);
+        });
+    }
+
+    /**
+     * Drop every subscriber whose write has been blocked for longer than the write
+     * timeout. The emitter is not touched here, as it stays locked by the blocked write.
+     */
+    private void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        long timeoutNanos = writeTimeout.toNanos();
+        forEachSubscriber(subscriber -> {
+            if (subscriber.abandonIfStalled(now, timeoutNanos)) {
+                unsubscribe(subscriber);
+                stalled.increment();
+                resizeDispatcher(1);
+            }
+        });
+    }
+
+    private void forEachSubscriber(Consumer<FeedSubscriber> action) {
+        for (FeedSubscriber subscriber : catalogSubscribers) {
+            action.accept(subscriber);
+        }
+        for (Set<FeedSubscriber> subscribers : bookSubscribers.values()) {
+            for (FeedSubscriber subscriber : subscribers) {
+                action.accept(subscriber);
+            }
+        }
+    }
+
+    private void dispatch(FeedSubscriber subscriber) {
+        if (subscriber.schedule()) {
+            dispatcher.execute(() -> {
+                // A thread that was blocked on a dropped subscriber is back, so the extra one can go
+                if (subscriber.drain()) {
+                    resizeDispatcher(-1);
+                }
+            });
+        }
+    }
+
+    /**
+     * Keep dispatchThreads threads free to write, however many are blocked on dropped subscribers
+     */
+    private synchronized void resizeDispatcher(int blockedDelta) {
+        blockedThreads += blockedDelta;
+        int size = dispatchThreads + blockedThreads;
+        if (blockedDelta > 0) {
+            dispatcher.setMaximumPoolSize(size);
+            dispatcher.setCorePoolSize(size);
+        } else {
+            dispatcher.setCorePoolSize(size);
+            dispatcher.setMaximumPoolSize(size);
+        }
+    }
+
+    private void unsubscribe(FeedSubscriber subscriber) {
+        subscriber.close();
+        boolean[] removed = {false};
+        if (subscriber.getBookId() == null) {
+            removed[0] = catalogSubscribers.remove(subscriber);
+        } else {
+            bookSubscribers.computeIfPresent(subscriber.getBookId(), (id, subscribers) -> {
+                removed[0] = subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.bookstore.feed;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Book;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+/**
+ * Compact change notification sent to feed subscribers.
+ * Only the fields relevant to the kind of change are set; the rest are omitted from the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeedEvent {
+
+    /** SSE event name for book changes */
+    public static final String BOOK = "book";
+
+    /** SSE event name for rating changes */
+    public static final String RATING = "rating";
+
+    /** SSE event name telling a lagging subscriber that changes were dropped and it should reload */
+    public static final String RESYNC = "resync";
+
+    private final String type;
+    private final String change;
+    private final Long bookId;
+    private Integer stockQuantity;
+    private BigDecimal price;
+    private Long ratingId;
+    private Integer rating;
+
+    private FeedEvent(String type, String change, Long bookId) {
+        this.type = type;
+        this.change = change;
+        this.bookId = bookId;
+    }
+
+    static FeedEvent of(BookChangedEvent event) {
+        FeedEvent feedEvent = new FeedEvent(BOOK, event.getType().name(), event.getBookId());
+        Book book = event.getBook();
+        if (event.getType() != BookChangedEvent.Type.DELETED && book != null) {
+            feedEvent.stockQuantity = book.getStockQuantity();
+            feedEvent.price = book.getPrice();
+        }
+        return feedEvent;
+    }
+
+    static FeedEvent of(RatingChangedEvent event) {
+        FeedEvent feedEvent = new FeedEvent(RATING, event.getType().name(), event.getBookId());
+        feedEvent.ratingId = event.getRating().getId();
+        if (event.getType() != RatingChangedEvent.Type.DELETED) {
+            feedEvent.rating = event.getRating().getRating();
+        }
+        return feedEvent;
+    }
+
+    static FeedEvent resync() {
+        return new FeedEvent(RESYNC, null, null);
+    }
+
+    /**
+     * Events with the same key replace each other while waiting for a slow subscriber:
+     * book changes per book, rating changes per rating, so one rating's change never
+     * hides another's
+     */
+    String getCoalesceKey() {
+        if (bookId == null) {
+            return type;
+        }
+        return ratingId == null ? type + ":" + bookId : type + ":" + bookId + ":" + ratingId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getChange() {
+        return change;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public Integer getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public Long getRatingId() {
+        return ratingId;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+}
@@ -0,0 +1,162 @@
+package com.bookstore.feed;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One open SSE connection and the events waiting to be written to it.
+ *
+ * Waiting events are coalesced by key, so a subscriber that falls behind holds
+ * at most one event per book, and one per rating. If even that exceeds
+ * maxPending, everything waiting is replaced by a single resync event.
+ * At most one dispatcher thread writes to a subscriber at a time.
+ *
+ * A write blocks until the client has taken the data. ChangeFeed abandons a
+ * subscriber whose write has been blocked for longer than the write timeout;
+ * once the write returns or fails, the connection is closed with an error.
+ */
+class FeedSubscriber {
+
+    private static final String HEARTBEAT = "heartbeat";
+
+    private final SseEmitter emitter;
+    private final Long bookId;
+    private final int maxPending;
+
+    private final Map<String, FeedEvent> pending = new LinkedHashMap<>();
+    private boolean heartbeatDue = false;
+    private boolean scheduled = false;
+    private boolean abandoned = false;
+    private volatile boolean closed = false;
+
+    // Start of the write in progress, valid while writing is set
+    private volatile long writeStartedNanos;
+    private volatile boolean writing = false;
+
+    FeedSubscriber(SseEmitter emitter, Long bookId, int maxPending) {
+        this.emitter = emitter;
+        this.bookId = bookId;
+        this.maxPending = maxPending;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * The book this subscriber follows, or null for the whole catalog
+     */
+    Long getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Queue an event, returning the number of waiting events dropped to make room.
+     * Call schedule() afterwards to find out whether a drain is needed.
+     */
+    synchronized int offer(FeedEvent event) {
+        String key = event.getCoalesceKey();
+        // Remove first so a replaced event moves to the back
+        if (pending.remove(key) != null || pending.size() < maxPending) {
+            pending.put(key, event);
+            return 0;
+        }
+        int dropped = pending.size() + 1;
+        pending.clear();
+        pending.put(FeedEvent.RESYNC, FeedEvent.resync());
+        return dropped;
+    }
+
+    synchronized void heartbeat() {
+        heartbeatDue = true;
+    }
+
+    /**
+     * Claim the right to drain; true when the caller must now run drain()
+     */
+    synchronized boolean schedule() {
+        if (scheduled || closed || (pending.isEmpty() && !heartbeatDue)) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * Write everything waiting, including events queued while writing. Returns true
+     * when the subscriber was abandoned for a stalled write while this ran.
+     */
+    boolean drain() {
+        try {
+            writePending();
+            if (isAbandoned()) {
+                throw new IOException("Write did not complete within the write timeout");
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or stopped reading; the emitter callbacks unregister this subscriber
+            close();
+            emitter.completeWithError(e);
+        }
+        return isAbandoned();
+    }
+
+    /**
+     * Give up on a subscriber whose current write started more than timeoutNanos
+     * before nowNanos. Returns true if it was abandoned by this call; no further
+     * events are written to it.
+     */
+    synchronized boolean abandonIfStalled(long nowNanos, long timeoutNanos) {
+        if (closed || !writing || nowNanos - writeStartedNanos < timeoutNanos) {
+            return false;
+        }
+        abandoned = true;
+        close();
+        return true;
+    }
+
+    private void writePending() throws IOException {
+        while (true) {
+            List<FeedEvent> events;
+            boolean heartbeat;
+            synchronized (this) {
+                if (closed || (pending.isEmpty() && !heartbeatDue)) {
+                    scheduled = false;
+                    return;
+                }
+                events = new ArrayList<>(pending.values());
+                pending.clear();
+                heartbeat = heartbeatDue;
+                heartbeatDue = false;
+            }
+            if (heartbeat) {
+                send(SseEmitter.event().comment(HEARTBEAT));
+            }
+            for (FeedEvent event : events) {
+                send(SseEmitter.event().name(event.getType()).data(event));
+            }
+        }
+    }
+
+    private void send(SseEmitter.SseEventBuilder event) throws IOException {
+        writeStartedNanos = System.nanoTime();
+        writing = true;
+        try {
+            emitter.send(event);
+        } finally {
+            writing = false;
+        }
+    }
+
+    private synchronized boolean isAbandoned() {
+        return abandoned;
+    }
+
+    void close() {
+        closed = true;
+    }
+}
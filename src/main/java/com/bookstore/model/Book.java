@@ -1,5 +1,8 @@
 package com.bookstore.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -11,11 +14,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books",
+       indexes = @Index(name = "idx_books_stock_quantity", columnList = "stock_quantity"))
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Book {
     
+    // A pooled sequence (rather than IDENTITY) lets Hibernate batch inserts,
+    // reserving 50 ids per round-trip
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "books_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Title is required")
@@ -49,9 +57,41 @@ public class Book {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Bumped by every entity update and by the stock UPDATE statements, so an
+    // entity update cannot write back a stock quantity a reservation has since changed
+    @Version
+    @JsonIgnore
+    private Long version;
+    
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Rating> ratings = new ArrayList<>();
     
+    // Rating aggregates, maintained by RatingService through atomic UPDATE statements.
+    // They are never written by entity updates so a concurrent rating is not overwritten,
+    // and never read from request bodies so a client cannot create a book with made-up ratings.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    private long ratingSum = 0;
+    
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "rating_count", nullable = false, updatable = false)
+    private int ratingCount = 0;
+    
+    @Column(name = "one_star_count", nullable = false, updatable = false)
+    private int oneStarCount = 0;
+    
+    @Column(name = "two_star_count", nullable = false, updatable = false)
+    private int twoStarCount = 0;
+    
+    @Column(name = "three_star_count", nullable = false, updatable = false)
+    private int threeStarCount = 0;
+    
+    @Column(name = "four_star_count", nullable = false, updatable = false)
+    private int fourStarCount = 0;
+    
+    @Column(name = "five_star_count", nullable = false, updatable = false)
+    private int fiveStarCount = 0;
+    
     // Constructors
     public Book() {}
     
@@ -62,6 +102,41 @@ public class Book {
         this.price = price;
     }
     
+    /**
+     * Detached copy of the book's columns, including its rating aggregates but not its ratings
+     */
+    public Book copy() {
+        Book copy = new Book(title, author, isbn, price);
+        copy.id = id;
+        copy.publicationYear = publicationYear;
+        copy.description = description;
+        copy.stockQuantity = stockQuantity;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.version = version;
+        copy.ratingSum = ratingSum;
+        copy.ratingCount = ratingCount;
+        copy.oneStarCount = oneStarCount;
+        copy.twoStarCount = twoStarCount;
+        copy.threeStarCount = threeStarCount;
+        copy.fourStarCount = fourStarCount;
+        copy.fiveStarCount = fiveStarCount;
+        return copy;
+    }
+    
+    /**
+     * Zero the rating aggregates, for a new book that cannot have ratings yet
+     */
+    public void clearRatingStats() {
+        ratingSum = 0;
+        ratingCount = 0;
+        oneStarCount = 0;
+        twoStarCount = 0;
+        threeStarCount = 0;
+        fourStarCount = 0;
+        fiveStarCount = 0;
+    }
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -154,6 +229,15 @@ public class Book {
         this.updatedAt = updatedAt;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    @JsonIgnore
     public List<Rating> getRatings() {
         return ratings;
     }
@@ -162,23 +246,37 @@ public class Book {
         this.ratings = ratings;
     }
     
-    // Helper methods for rating calculations
+    public long getRatingSum() {
+        return ratingSum;
+    }
+    
+    /**
+     * Number of ratings per star value, index 0 holding 1-star ratings
+     */
+    public int[] getRatingHistogram() {
+        return new int[] { oneStarCount, twoStarCount, threeStarCount, fourStarCount, fiveStarCount };
+    }
+    
+    // Helper methods for rating calculations, served from the stored aggregates
     public Double getAverageRating() {
-        if (ratings == null || ratings.isEmpty()) {
+        return averageRating(ratingSum, ratingCount);
+    }
+    
+    /**
+     * Average of count ratings adding up to sum, rounded to one decimal (0.0 when unrated)
+     */
+    public static double averageRating(long sum, int count) {
+        if (count == 0) {
             return 0.0;
         }
         
-        double sum = ratings.stream()
-                .mapToInt(Rating::getRating)
-                .sum();
-        
-        return BigDecimal.valueOf(sum / ratings.size())
+        return BigDecimal.valueOf((double) sum / count)
                 .setScale(1, RoundingMode.HALF_UP)
                 .doubleValue();
     }
     
     public int getRatingCount() {
-        return ratings != null ? ratings.size() : 0;
+        return ratingCount;
     }
     
     public String getStarRating() {
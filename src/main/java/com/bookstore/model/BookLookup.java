@@ -0,0 +1,32 @@
+package com.bookstore.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The answer for one id of a multi-get: the book, or found=false when no book has that id
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "found", "book"})
+public class BookLookup {
+
+    private final Long id;
+    private final Book book;
+
+    public BookLookup(Long id, Book book) {
+        this.id = id;
+        this.book = book;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public boolean isFound() {
+        return book != null;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bookstore.model;
+
+import java.math.BigDecimal;
+
+/**
+ * The columns of a book shown in lists, with its stored rating stats.
+ *
+ * Read straight from the books table by constructor expression, or copied from
+ * a catalog Book, so list responses never touch the ratings association and
+ * leave out the description, timestamps and histogram.
+ */
+public class BookSummary {
+
+    private final Long id;
+    private final String title;
+    private final String author;
+    private final String isbn;
+    private final BigDecimal price;
+    private final Integer publicationYear;
+    private final Integer stockQuantity;
+    private final double averageRating;
+    private final int ratingCount;
+
+    public BookSummary(Long id, String title, String author, String isbn, BigDecimal price,
+                       Integer publicationYear, Integer stockQuantity, long ratingSum, int ratingCount) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.isbn = isbn;
+        this.price = price;
+        this.publicationYear = publicationYear;
+        this.stockQuantity = stockQuantity;
+        this.averageRating = Book.averageRating(ratingSum, ratingCount);
+        this.ratingCount = ratingCount;
+    }
+
+    public static BookSummary of(Book book) {
+        return new BookSummary(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getPrice(),
+                book.getPublicationYear(), book.getStockQuantity(), book.getRatingSum(), book.getRatingCount());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public Integer getPublicationYear() {
+        return publicationYear;
+    }
+
+    public Integer getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+}
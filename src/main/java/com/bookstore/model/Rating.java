@@ -5,13 +5,23 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Entity
-@Table(name = "ratings")
+@Table(name = "ratings",
+       indexes = {
+           // Ratings of a book, newest first; also serves the per-book count and average
+           @Index(name = "idx_ratings_book_created", columnList = "book_id, created_at DESC"),
+           @Index(name = "idx_ratings_reviewer_key", columnList = "reviewer_key"),
+           @Index(name = "idx_ratings_created", columnList = "created_at DESC, id DESC")
+       },
+       uniqueConstraints = @UniqueConstraint(name = "uk_ratings_book_reviewer", columnNames = {"book_id", "reviewer_key"}))
 public class Rating {
     
+    // Pooled sequence ids (not IDENTITY) so inserts can be sent as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rating_seq")
+    @SequenceGenerator(name = "rating_seq", sequenceName = "ratings_seq", allocationSize = 50)
     private Long id;
     
     @NotNull(message = "Rating value is required")
@@ -23,6 +33,10 @@ public class Rating {
     @Column(name = "reviewer_name")
     private String reviewerName;
     
+    // Lower-cased reviewer name, so case-insensitive lookups can use an index
+    @Column(name = "reviewer_key")
+    private String reviewerKey;
+    
     @Column(length = 1000)
     private String comment;
     
@@ -42,10 +56,18 @@ public class Rating {
     public Rating(Integer rating, String reviewerName, String comment, Book book) {
         this.rating = rating;
         this.reviewerName = reviewerName;
+        this.reviewerKey = reviewerKey(reviewerName);
         this.comment = comment;
         this.book = book;
     }
     
+    /**
+     * Normalized form of a reviewer name, as stored in the indexed reviewer_key column
+     */
+    public static String reviewerKey(String reviewerName) {
+        return reviewerName != null ? reviewerName.toLowerCase(Locale.ROOT) : null;
+    }
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -80,6 +102,7 @@ public class Rating {
     
     public void setReviewerName(String reviewerName) {
         this.reviewerName = reviewerName;
+        this.reviewerKey = reviewerKey(reviewerName);
     }
     
     public String getComment() {
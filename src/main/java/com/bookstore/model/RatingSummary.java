@@ -0,0 +1,46 @@
+package com.bookstore.model;
+
+/**
+ * Rating statistics of one book: average, count and the number of ratings per star value
+ */
+public class RatingSummary {
+
+    private final Long bookId;
+    private final double averageRating;
+    private final long ratingCount;
+    private final long[] histogram;
+
+    /**
+     * Statistics of count ratings adding up to sum; histogram index 0 holds 1-star ratings.
+     * The average is rounded like Book's, so both report the same value for a book.
+     */
+    public RatingSummary(Long bookId, long sum, long count, long[] histogram) {
+        this.bookId = bookId;
+        this.averageRating = Book.averageRating(sum, (int) count);
+        this.ratingCount = count;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Statistics of a book without ratings
+     */
+    public static RatingSummary empty(Long bookId) {
+        return new RatingSummary(bookId, 0, 0, new long[5]);
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public long getRatingCount() {
+        return ratingCount;
+    }
+
+    public long[] getHistogram() {
+        return histogram;
+    }
+}
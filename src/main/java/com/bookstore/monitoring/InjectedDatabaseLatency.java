@@ -0,0 +1,40 @@
+package com.bookstore.monitoring;
+
+import java.time.Duration;
+
+/**
+ * Testing aid that delays every JDBC statement and batch by a fixed amount,
+ * standing in for a slow or distant database in load tests. The calling thread
+ * sleeps, so it is held exactly as it would be by a blocking driver.
+ *
+ * Set from bookstore.testing.db-latency; zero (the default) disables it.
+ */
+public final class InjectedDatabaseLatency {
+
+    private static volatile long latencyNanos;
+
+    private InjectedDatabaseLatency() {
+    }
+
+    /**
+     * Set the delay applied to each statement; zero disables it
+     */
+    public static void setLatency(Duration latency) {
+        latencyNanos = latency.toNanos();
+    }
+
+    /**
+     * Sleep for the configured delay, if any
+     */
+    static void apply() {
+        long nanos = latencyNanos;
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
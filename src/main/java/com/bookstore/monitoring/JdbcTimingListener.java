@@ -0,0 +1,43 @@
+package com.bookstore.monitoring;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Per-session Hibernate listener that adds the time spent executing JDBC
+ * statements and batches to the tracked request. Hibernate creates one
+ * instance per session, so the start time needs no synchronization.
+ * Any {@link InjectedDatabaseLatency} is applied here and counted as JDBC time.
+ */
+public class JdbcTimingListener implements SessionEventListener {
+
+    private long executionStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+        InjectedDatabaseLatency.apply();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        record();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+        InjectedDatabaseLatency.apply();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        record();
+    }
+
+    private void record() {
+        SqlRequestStats stats = SqlStatementTracker.current();
+        if (stats != null) {
+            stats.statementExecuted(System.nanoTime() - executionStart);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.bookstore.monitoring;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements a request to the annotated handler may issue.
+ *
+ * The budget is sent back in the X-SQL-Budget header next to X-SQL-Statements,
+ * and a request that exceeds it is logged and counted in the
+ * "bookstore.sql.budget.exceeded" metric. On a class it applies to every
+ * handler method that does not declare its own.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface SqlBudget {
+
+    /**
+     * Maximum statements per request
+     */
+    int value();
+}
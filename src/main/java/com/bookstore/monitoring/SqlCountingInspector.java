@@ -0,0 +1,19 @@
+package com.bookstore.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate statement inspector that counts every statement prepared while a
+ * request is being tracked. The SQL is passed through unchanged.
+ */
+public class SqlCountingInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        SqlRequestStats stats = SqlStatementTracker.current();
+        if (stats != null) {
+            stats.statementPrepared(sql);
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,242 @@
+package com.bookstore.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements and JDBC time of every HTTP request.
+ *
+ * The totals are sent as the X-SQL-Statements and X-SQL-Time-Ms response headers
+ * and recorded as the "bookstore.sql.statements" and "bookstore.sql.time" metrics,
+ * tagged with the request method and URI pattern. A statement repeated at least
+ * bookstore.sql.n-plus-one-threshold times in one request is logged as a likely
+ * N+1 query, and handlers annotated with {@link SqlBudget} are checked against
+ * their budget.
+ *
+ * The body is held back until the handler, the view and body serialization are
+ * done, so the headers cover all of their work. Streamed responses are sent as
+ * they are written instead; their headers count the statements run before
+ * streaming started, and statements run on the async thread are not counted.
+ */
+@Component
+public class SqlMonitoringFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlMonitoringFilter.class);
+
+    static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    static final String TIME_HEADER = "X-SQL-Time-Ms";
+    static final String BUDGET_HEADER = "X-SQL-Budget";
+
+    private static final int MAX_LOGGED_SQL_LENGTH = 300;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookstore.sql.monitoring.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bookstore.sql.n-plus-one-threshold:10}")
+    private int nPlusOneThreshold;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlRequestStats stats = SqlStatementTracker.begin();
+        SqlHeaderResponse trackedResponse = new SqlHeaderResponse(request, response, stats);
+        try {
+            chain.doFilter(request, trackedResponse);
+        } finally {
+            SqlStatementTracker.end();
+            trackedResponse.complete();
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlRequestStats stats) {
+        String method = request.getMethod();
+        String uri = uriPattern(request);
+
+        DistributionSummary.builder("bookstore.sql.statements")
+                .description("SQL statements issued per HTTP request")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(stats.getStatementCount());
+        Timer.builder("bookstore.sql.time")
+                .description("JDBC execution time per HTTP request")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(stats.getExecutionNanos(), TimeUnit.NANOSECONDS);
+
+        Map<String, Integer> repeated = stats.getRepeatedStatements(nPlusOneThreshold);
+        if (!repeated.isEmpty()) {
+            Counter.builder("bookstore.sql.n_plus_one")
+                    .description("Requests that repeated one SQL statement at least the N+1 threshold")
+                    .tags("method", method, "uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            for (Map.Entry<String, Integer> entry : repeated.entrySet()) {
+                log.warn("Possible N+1 query: {} executions during {} {} of: {}",
+                        entry.getValue(), method, uri, abbreviate(entry.getKey()));
+            }
+        }
+
+        Integer budget = budget(request);
+        if (budget != null && stats.getStatementCount() > budget) {
+            Counter.builder("bookstore.sql.budget.exceeded")
+                    .description("Requests that issued more SQL statements than their handler's budget")
+                    .tags("method", method, "uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("SQL budget exceeded: {} {} issued {} statements, budget is {}",
+                    method, uri, stats.getStatementCount(), budget);
+        }
+    }
+
+    /**
+     * Budget declared on the handler method or its class, or null when there is none
+     */
+    private static Integer budget(HttpServletRequest request) {
+        if (!(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler)) {
+            return null;
+        }
+        SqlBudget budget = handler.getMethodAnnotation(SqlBudget.class);
+        if (budget == null) {
+            budget = AnnotatedElementUtils.findMergedAnnotation(handler.getBeanType(), SqlBudget.class);
+        }
+        return budget != null ? budget.value() : null;
+    }
+
+    private static String uriPattern(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // Raw paths would give the metrics unbounded cardinality
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+
+    private static String abbreviate(String sql) {
+        String singleLine = sql.replaceAll("\\s+", " ").trim();
+        return singleLine.length() <= MAX_LOGGED_SQL_LENGTH
+                ? singleLine
+                : singleLine.substring(0, MAX_LOGGED_SQL_LENGTH) + "...";
+    }
+
+    /**
+     * Holds the body back until the request is done, so the SQL headers can include
+     * statements run while it was being written, such as lazy loads during JSON
+     * serialization. Streamed responses (StreamingResponseBody, SSE) cannot be held
+     * back; they get the headers when they start writing.
+     */
+    private static class SqlHeaderResponse extends ContentCachingResponseWrapper {
+
+        // Set by Spring MVC's streaming return value handlers through ShallowEtagHeaderFilter.disableContentCaching
+        private static final String STREAMING_ATTRIBUTE = ShallowEtagHeaderFilter.class.getName() + ".STREAMING";
+
+        private final HttpServletRequest request;
+        private final SqlRequestStats stats;
+        private boolean headersWritten;
+
+        SqlHeaderResponse(HttpServletRequest request, HttpServletResponse response, SqlRequestStats stats) {
+            super(response);
+            this.request = request;
+            this.stats = stats;
+        }
+
+        /**
+         * Write the headers and then the held-back body
+         */
+        void complete() throws IOException {
+            writeSqlHeaders();
+            copyBodyToResponse();
+        }
+
+        synchronized void writeSqlHeaders() {
+            if (headersWritten || isCommitted()) {
+                headersWritten = true;
+                return;
+            }
+            headersWritten = true;
+            setHeader(STATEMENTS_HEADER, String.valueOf(stats.getStatementCount()));
+            setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.3f", stats.getExecutionNanos() / 1_000_000.0));
+            Integer budget = budget(request);
+            if (budget != null) {
+                setHeader(BUDGET_HEADER, String.valueOf(budget));
+            }
+        }
+
+        private boolean isStreaming() {
+            return request.getAttribute(STREAMING_ATTRIBUTE) != null;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (isStreaming()) {
+                writeSqlHeaders();
+                return getResponse().getOutputStream();
+            }
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (isStreaming()) {
+                writeSqlHeaders();
+                return getResponse().getWriter();
+            }
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (isStreaming()) {
+                writeSqlHeaders();
+                getResponse().flushBuffer();
+            }
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeSqlHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeSqlHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeSqlHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
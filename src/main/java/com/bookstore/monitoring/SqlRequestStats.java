@@ -0,0 +1,53 @@
+package com.bookstore.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * SQL activity of one HTTP request: statements prepared, time spent executing
+ * them, and how often each distinct statement ran.
+ *
+ * Only ever touched by the thread serving the request, so it is not synchronized.
+ */
+public class SqlRequestStats {
+
+    private int statementCount;
+
+    private long executionNanos;
+
+    // SQL text (with ? placeholders) -> times prepared
+    private final Map<String, Integer> executionsBySql = new HashMap<>();
+
+    void statementPrepared(String sql) {
+        statementCount++;
+        executionsBySql.merge(sql, 1, Integer::sum);
+    }
+
+    void statementExecuted(long nanos) {
+        executionNanos += nanos;
+    }
+
+    /**
+     * Number of SQL statements issued so far
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Total JDBC execution time so far, in nanoseconds
+     */
+    public long getExecutionNanos() {
+        return executionNanos;
+    }
+
+    /**
+     * Statements that ran at least threshold times, the usual signature of an N+1 query
+     */
+    public Map<String, Integer> getRepeatedStatements(int threshold) {
+        return executionsBySql.entrySet().stream()
+                .filter(entry -> entry.getValue() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
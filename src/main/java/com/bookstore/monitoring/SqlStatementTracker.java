@@ -0,0 +1,38 @@
+package com.bookstore.monitoring;
+
+/**
+ * Holds the SqlRequestStats of the request being served by the current thread.
+ *
+ * Statements issued outside a tracked scope (startup, scheduled work, the async
+ * thread of a streamed response) are not recorded.
+ */
+public final class SqlStatementTracker {
+
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementTracker() {
+    }
+
+    /**
+     * Start recording for the current thread, replacing any previous scope
+     */
+    public static SqlRequestStats begin() {
+        SqlRequestStats stats = new SqlRequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * Stop recording for the current thread
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Stats of the current scope, or null when none is active
+     */
+    public static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+}
@@ -1,13 +1,23 @@
 package com.bookstore.repository;
 
 import com.bookstore.model.Book;
+import com.bookstore.model.BookSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
@@ -43,4 +53,111 @@ public interface BookRepository extends JpaRepository<Book, Long> {
      * Check if book exists by ISBN
      */
     boolean existsByIsbn(String isbn);
+    
+    /**
+     * Which of the given ISBNs already exist, checked in one query
+     */
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+    
+    // Keyset pagination: each window continues after the last id of the previous one,
+    // so deep pages cost the same as the first (no OFFSET scanning). Windows are read
+    // as BookSummary rows, selecting only the list columns and stored rating stats.
+    
+    String SUMMARY = "SELECT new com.bookstore.model.BookSummary(b.id, b.title, b.author, b.isbn, b.price, " +
+                     "b.publicationYear, b.stockQuantity, b.ratingSum, b.ratingCount) FROM Book b ";
+    
+    /**
+     * Find the next window of book summaries ordered by id
+     */
+    @Query(SUMMARY + "WHERE b.id > :afterId ORDER BY b.id ASC")
+    List<BookSummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+    
+    /**
+     * Find the next window of summaries of books by author (case-insensitive) ordered by id
+     */
+    @Query(SUMMARY + "WHERE LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%')) AND b.id > :afterId ORDER BY b.id ASC")
+    List<BookSummary> findSummariesByAuthorAfter(@Param("author") String author, @Param("afterId") Long afterId,
+                                                 Limit limit);
+    
+    /**
+     * Find the next window of summaries of books with stock above the given quantity ordered by id
+     */
+    @Query(SUMMARY + "WHERE b.stockQuantity > :quantity AND b.id > :afterId ORDER BY b.id ASC")
+    List<BookSummary> findSummariesInStockAfter(@Param("quantity") Integer quantity, @Param("afterId") Long afterId,
+                                                Limit limit);
+    
+    /**
+     * Find the summaries of the given books, in no particular order
+     */
+    @Query(SUMMARY + "WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Stream every book ordered by id through a forward-only cursor.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @Query("SELECT b FROM Book b ORDER BY b.id ASC")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Book> streamAllOrderById();
+    
+    /**
+     * Rating totals of every rated book, as (id, rating sum, rating count) rows
+     */
+    @Query("SELECT b.id, b.ratingSum, b.ratingCount FROM Book b WHERE b.ratingCount > 0")
+    List<Object[]> findRatingTotals();
+    
+    /**
+     * Rating totals of one book, as a single (id, rating sum, rating count) row, or none if it does not exist
+     */
+    @Query("SELECT b.id, b.ratingSum, b.ratingCount FROM Book b WHERE b.id = :bookId")
+    List<Object[]> findRatingTotalsById(@Param("bookId") Long bookId);
+    
+    /**
+     * Atomically apply deltas to the rating aggregates of a book. Clears the persistence
+     * context, since a managed Book would otherwise keep its old aggregates.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.ratingSum = b.ratingSum + :sumDelta, " +
+           "b.ratingCount = b.ratingCount + :countDelta, " +
+           "b.oneStarCount = b.oneStarCount + :oneDelta, " +
+           "b.twoStarCount = b.twoStarCount + :twoDelta, " +
+           "b.threeStarCount = b.threeStarCount + :threeDelta, " +
+           "b.fourStarCount = b.fourStarCount + :fourDelta, " +
+           "b.fiveStarCount = b.fiveStarCount + :fiveDelta " +
+           "WHERE b.id = :bookId")
+    int adjustRatingStats(@Param("bookId") Long bookId,
+                          @Param("sumDelta") long sumDelta,
+                          @Param("countDelta") int countDelta,
+                          @Param("oneDelta") int oneDelta,
+                          @Param("twoDelta") int twoDelta,
+                          @Param("threeDelta") int threeDelta,
+                          @Param("fourDelta") int fourDelta,
+                          @Param("fiveDelta") int fiveDelta);
+    
+    /**
+     * Take quantity units of stock, only if at least that many are left.
+     * Returns 1 when the stock was taken, 0 when it was insufficient or the book does not exist.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.stockQuantity = b.stockQuantity - :quantity, b.updatedAt = :now, " +
+           "b.version = b.version + 1 " +
+           "WHERE b.id = :bookId AND b.stockQuantity >= :quantity")
+    int reserveStock(@Param("bookId") Long bookId,
+                     @Param("quantity") int quantity,
+                     @Param("now") LocalDateTime now);
+    
+    /**
+     * Return quantity units of stock. Returns 0 when the book does not exist.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.stockQuantity = b.stockQuantity + :quantity, b.updatedAt = :now, " +
+           "b.version = b.version + 1 " +
+           "WHERE b.id = :bookId")
+    int releaseStock(@Param("bookId") Long bookId,
+                     @Param("quantity") int quantity,
+                     @Param("now") LocalDateTime now);
 }
@@ -1,20 +1,29 @@
 package com.bookstore.repository;
 
 import com.bookstore.model.Rating;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface RatingRepository extends JpaRepository<Rating, Long> {
     
     /**
-     * Find all ratings for a specific book
+     * Find all ratings for a specific book, newest first. The book is fetched in the
+     * same query, since serializing the ratings would otherwise load it separately.
      */
-    List<Rating> findByBookIdOrderByCreatedAtDesc(Long bookId);
+    @Query("SELECT r FROM Rating r JOIN FETCH r.book WHERE r.book.id = :bookId ORDER BY r.createdAt DESC")
+    List<Rating> findByBookIdOrderByCreatedAtDesc(@Param("bookId") Long bookId);
     
     /**
      * Count total ratings for a specific book
@@ -28,9 +37,20 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     Double findAverageRatingByBookId(@Param("bookId") Long bookId);
     
     /**
-     * Find ratings by reviewer name
+     * Rating statistics of the given books in one query, as (book id, rating sum, count,
+     * 1-star, 2-star, 3-star, 4-star, 5-star counts) rows; books without ratings have no row
      */
-    List<Rating> findByReviewerNameIgnoreCase(String reviewerName);
+    @Query("SELECT r.book.id, SUM(r.rating), COUNT(r), " +
+           "SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END) " +
+           "FROM Rating r WHERE r.book.id IN :bookIds GROUP BY r.book.id")
+    List<Object[]> findRatingStatsByBookIds(@Param("bookIds") Collection<Long> bookIds);
+    
+    /**
+     * Find ratings by reviewer, given the normalized name from Rating.reviewerKey
+     */
+    List<Rating> findByReviewerKey(String reviewerKey);
     
     /**
      * Find ratings by rating value
@@ -38,12 +58,27 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     List<Rating> findByRating(Integer rating);
     
     /**
-     * Find recent ratings across all books (for homepage/dashboard)
+     * Find the most recent ratings across all books (for homepage/dashboard)
+     */
+    List<Rating> findAllByOrderByCreatedAtDescIdDesc(Limit limit);
+    
+    /**
+     * Check if a reviewer has already rated a book (to prevent duplicate ratings),
+     * given the normalized name from Rating.reviewerKey
+     */
+    boolean existsByBookIdAndReviewerKey(Long bookId, String reviewerKey);
+    
+    /**
+     * Stream the (book id, lower-cased reviewer name) pair of every rating.
+     * Must be consumed inside a transaction and closed.
      */
-    List<Rating> findTop10ByOrderByCreatedAtDesc();
+    @Query("SELECT r.book.id, r.reviewerKey FROM Rating r")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamReviewerKeys();
     
     /**
-     * Check if a reviewer has already rated a book (to prevent duplicate ratings)
+     * Ratings created since the given time, oldest first, as (id, book id, created at) rows
      */
-    boolean existsByBookIdAndReviewerNameIgnoreCase(Long bookId, String reviewerName);
+    @Query("SELECT r.id, r.book.id, r.createdAt FROM Rating r WHERE r.createdAt >= :since ORDER BY r.createdAt, r.id")
+    List<Object[]> findCreatedSince(@Param("since") LocalDateTime since);
 }
@@ -0,0 +1,142 @@
+package com.bookstore.search;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text index over book title, author, ISBN and description.
+ *
+ * Built from the database once the application is ready and kept current from
+ * BookChangedEvents, so searches never have to scan the books table. Fuzzy
+ * searches also match title and author terms a few typos away from a query term,
+ * found in a BK-tree of those terms rather than by comparing every book.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final double TITLE_WEIGHT = 3.0;
+    private static final double AUTHOR_WEIGHT = 2.0;
+    private static final double ISBN_WEIGHT = 1.5;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+
+    // Match factor of a term one edit away from the query term; each further edit halves it
+    private static final double FUZZY_MATCH = 0.5;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    private final FuzzyDictionary titleAuthorTerms = new FuzzyDictionary();
+
+    private volatile boolean ready = false;
+
+    /**
+     * Load every book once startup (including sample data) has finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        index.clear();
+        titleAuthorTerms.clear();
+        for (Book book : bookRepository.findAll()) {
+            add(book);
+        }
+        ready = true;
+        log.info("Search index built with {} books", index.size());
+    }
+
+    /**
+     * Apply a committed book change to the index
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            index.remove(event.getBookId());
+            titleAuthorTerms.remove(event.getBookId());
+        } else {
+            add(event.getBook());
+        }
+    }
+
+    /**
+     * Ids of books matching every term of the query, most relevant first
+     */
+    public List<SearchHit> search(String query) {
+        return index.search(TextAnalyzer.tokenize(query));
+    }
+
+    /**
+     * Like search, but a query term also matches title and author terms within a
+     * few edits of it: one for terms of 4 or 5 characters, two from 6 on. Typo
+     * matches score below exact and prefix matches, and lower the more edits they take.
+     */
+    public List<SearchHit> fuzzySearch(String query) {
+        List<String> terms = TextAnalyzer.tokenize(query);
+        Map<String, Map<String, Double>> alternatives = new HashMap<>();
+        for (String term : terms) {
+            int maxEdits = maxEdits(term);
+            if (maxEdits == 0) {
+                continue;
+            }
+            Map<String, Double> corrections = new HashMap<>();
+            titleAuthorTerms.within(term, maxEdits).forEach((correction, edits) -> {
+                if (edits > 0) {
+                    corrections.put(correction, FUZZY_MATCH / (1 << (edits - 1)));
+                }
+            });
+            alternatives.put(term, corrections);
+        }
+        return index.search(terms, alternatives);
+    }
+
+    /**
+     * Whether the initial build has completed; until then callers should query the database
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void add(Book book) {
+        Map<String, Double> termWeights = new HashMap<>();
+        addTerms(termWeights, TextAnalyzer.tokenize(book.getTitle()), TITLE_WEIGHT);
+        addTerms(termWeights, TextAnalyzer.tokenize(book.getAuthor()), AUTHOR_WEIGHT);
+        addTerms(termWeights, TextAnalyzer.tokenizeIsbn(book.getIsbn()), ISBN_WEIGHT);
+        addTerms(termWeights, TextAnalyzer.tokenize(book.getDescription()), DESCRIPTION_WEIGHT);
+        index.put(book.getId(), termWeights);
+
+        List<String> fuzzyTerms = new ArrayList<>(TextAnalyzer.tokenize(book.getTitle()));
+        fuzzyTerms.addAll(TextAnalyzer.tokenize(book.getAuthor()));
+        titleAuthorTerms.put(book.getId(), fuzzyTerms);
+    }
+
+    /**
+     * Typos tolerated in a query term; short terms are too close to too many others
+     */
+    private static int maxEdits(String term) {
+        if (term.length() < 4) {
+            return 0;
+        }
+        return term.length() < 6 ? 1 : 2;
+    }
+
+    private static void addTerms(Map<String, Double> termWeights, List<String> terms, double weight) {
+        for (String term : terms) {
+            termWeights.merge(term, weight, Double::sum);
+        }
+    }
+}
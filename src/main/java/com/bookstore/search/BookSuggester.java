@@ -0,0 +1,114 @@
+package com.bookstore.search;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * As-you-type suggestions of book titles and authors, ranked by rating count.
+ *
+ * Built from the database once the application is ready and kept current from
+ * BookChangedEvents and RatingChangedEvents, so suggesting never queries the database.
+ */
+@Component
+public class BookSuggester {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSuggester.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final SuggestionIndex index = new SuggestionIndex();
+
+    // Orders the reads of rating counts, so a slower older read never overwrites a newer one
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean ready = false;
+
+    /**
+     * Load every book once startup (including sample data) has finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.lock();
+        try {
+            index.clear();
+            for (Book book : bookRepository.findAll()) {
+                index.put(book.getId(), book.getTitle(), book.getAuthor(), book.getRatingCount());
+            }
+            index.merge();
+            ready = true;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Suggestion index built with {} titles and authors", index.size());
+    }
+
+    /**
+     * Apply a committed book change to the index. The title and author come from
+     * the event, but the rating count is read back, as the event's copy of the
+     * book may predate ratings that were counted since.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        lock.lock();
+        try {
+            List<Object[]> rows = event.getType() == BookChangedEvent.Type.DELETED
+                    ? List.of()
+                    : bookRepository.findRatingTotalsById(event.getBookId());
+            if (rows.isEmpty()) {
+                index.remove(event.getBookId());
+            } else {
+                Book book = event.getBook();
+                index.put(book.getId(), book.getTitle(), book.getAuthor(), ((Number) rows.get(0)[2]).intValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the rated book's stored rating count on its title and author. Runs under
+     * the lock, so each read of the count starts after the previous one and never
+     * sees an older state.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        lock.lock();
+        try {
+            List<Object[]> rows = bookRepository.findRatingTotalsById(event.getBookId());
+            if (rows.isEmpty()) {
+                index.remove(event.getBookId());
+            } else {
+                index.setRatings(event.getBookId(), ((Number) rows.get(0)[2]).intValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * At most limit titles and authors with a word starting with the prefix, most ratings first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return index.suggest(prefix, limit);
+    }
+
+    /**
+     * Whether the initial build has completed; until then there is nothing to suggest
+     */
+    public boolean isReady() {
+        return ready;
+    }
+}
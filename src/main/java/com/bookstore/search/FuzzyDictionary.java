@@ -0,0 +1,228 @@
+package com.bookstore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe dictionary of terms that finds the terms within a few edits of a
+ * misspelled one, using a BK-tree.
+ *
+ * Each node's children are keyed by their Levenshtein distance to it. Because
+ * that distance is a metric, a search for terms within k edits of a query that is
+ * d edits from a node only has to descend into the children at distance d - k to
+ * d + k; the rest of the tree is never compared. Nodes live in parallel arrays,
+ * children as linked lists, so a large dictionary costs a few ints per term.
+ *
+ * Terms are counted by the documents using them; a term no document uses any
+ * more stays in the tree, skipped by searches, until unused terms outnumber used
+ * ones and the tree is rebuilt.
+ */
+public class FuzzyDictionary {
+
+    private static final int NONE = -1;
+
+    // Node -> term, number of uses, distance to its parent, first child and next sibling
+    private final List<String> terms = new ArrayList<>();
+    private int[] uses = new int[16];
+    private int[] parentDistances = new int[16];
+    private int[] firstChildren = new int[16];
+    private int[] nextSiblings = new int[16];
+
+    private final Map<String, Integer> nodesByTerm = new HashMap<>();
+    private int unused;
+
+    // document id -> its terms, needed to unindex a document
+    private final Map<Long, Set<String>> termsByDocument = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a document's terms, replacing whatever was indexed for it before
+     */
+    public void put(long id, Collection<String> documentTerms) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            Set<String> distinct = new HashSet<>(documentTerms);
+            for (String term : distinct) {
+                Integer node = nodesByTerm.get(term);
+                if (node == null) {
+                    insert(term, 1);
+                } else if (uses[node]++ == 0) {
+                    unused--;
+                }
+            }
+            termsByDocument.put(id, distinct);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document's terms
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            nodesByTerm.clear();
+            termsByDocument.clear();
+            unused = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of terms in use
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodesByTerm.size() - unused;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Terms in use within maxDistance edits (insertions, deletions or substitutions)
+     * of the given term, each with its distance; the term itself, if present, at 0
+     */
+    public Map<String, Integer> within(String term, int maxDistance) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> matches = new HashMap<>();
+            if (terms.isEmpty()) {
+                return matches;
+            }
+            int[] previous = new int[term.length() + 1];
+            int[] current = new int[term.length() + 1];
+            int[] stack = new int[16];
+            int depth = 0;
+            stack[depth++] = 0;
+            while (depth > 0) {
+                int node = stack[--depth];
+                int distance = distance(term, terms.get(node), previous, current);
+                if (distance <= maxDistance && uses[node] > 0) {
+                    matches.put(terms.get(node), distance);
+                }
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    if (Math.abs(parentDistances[child] - distance) <= maxDistance) {
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, depth * 2);
+                        }
+                        stack[depth++] = child;
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeDocument(long id) {
+        Set<String> documentTerms = termsByDocument.remove(id);
+        if (documentTerms == null) {
+            return;
+        }
+        for (String term : documentTerms) {
+            if (--uses[nodesByTerm.get(term)] == 0) {
+                unused++;
+            }
+        }
+        if (unused > nodesByTerm.size() - unused) {
+            rebuild();
+        }
+    }
+
+    private void insert(String term, int count) {
+        int node = terms.size();
+        if (node == uses.length) {
+            uses = Arrays.copyOf(uses, node * 2);
+            parentDistances = Arrays.copyOf(parentDistances, node * 2);
+            firstChildren = Arrays.copyOf(firstChildren, node * 2);
+            nextSiblings = Arrays.copyOf(nextSiblings, node * 2);
+        }
+        terms.add(term);
+        nodesByTerm.put(term, node);
+        uses[node] = count;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        if (node == 0) {
+            return;
+        }
+        int[] previous = new int[term.length() + 1];
+        int[] current = new int[term.length() + 1];
+        int parent = 0;
+        while (true) {
+            int distance = distance(term, terms.get(parent), previous, current);
+            int child = firstChildren[parent];
+            while (child != NONE && parentDistances[child] != distance) {
+                child = nextSiblings[child];
+            }
+            if (child == NONE) {
+                parentDistances[node] = distance;
+                nextSiblings[node] = firstChildren[parent];
+                firstChildren[parent] = node;
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    /**
+     * Re-insert only the terms in use
+     */
+    private void rebuild() {
+        List<String> oldTerms = new ArrayList<>(terms);
+        int[] oldUses = Arrays.copyOf(uses, oldTerms.size());
+        terms.clear();
+        nodesByTerm.clear();
+        unused = 0;
+        for (int node = 0; node < oldTerms.size(); node++) {
+            if (oldUses[node] > 0) {
+                insert(oldTerms.get(node), oldUses[node]);
+            }
+        }
+    }
+
+    /**
+     * Levenshtein distance, with the two rows of the table passed in so a search
+     * comparing many terms allocates them once
+     */
+    private static int distance(String a, String b, int[] previous, int[] current) {
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            char bChar = b.charAt(j - 1);
+            for (int i = 1; i <= a.length(); i++) {
+                int substitution = previous[i - 1] + (a.charAt(i - 1) == bChar ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[a.length()];
+    }
+}
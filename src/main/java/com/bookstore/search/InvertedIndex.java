@@ -0,0 +1,248 @@
+package com.bookstore.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe inverted index from normalized terms to weighted document postings.
+ *
+ * Besides exact terms, a query term matches dictionary terms it is a prefix of
+ * (sorted dictionary range scan) and, for terms of three or more characters,
+ * terms it is a substring of (trigram index over the term dictionary), plus any
+ * alternative terms the caller supplies, such as corrections of a typo. Matches
+ * are scored by field weight, match kind and inverse document frequency; all
+ * query terms must match for a document to be returned.
+ */
+public class InvertedIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final double EXACT_MATCH = 1.0;
+    private static final double PREFIX_MATCH = 0.6;
+    private static final double SUBSTRING_MATCH = 0.3;
+
+    // term -> (document id -> accumulated field weight)
+    private final NavigableMap<String, Map<Long, Double>> postings = new TreeMap<>();
+
+    // trigram -> dictionary terms containing it
+    private final Map<String, Set<String>> grams = new HashMap<>();
+
+    // document id -> its terms, needed to unindex a document
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a document, replacing whatever was indexed for it before
+     */
+    public void put(long id, Map<String, Double> termWeights) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            for (Map.Entry<String, Double> entry : termWeights.entrySet()) {
+                String term = entry.getKey();
+                Map<Long, Double> docs = postings.get(term);
+                if (docs == null) {
+                    docs = new HashMap<>();
+                    postings.put(term, docs);
+                    addGrams(term);
+                }
+                docs.put(id, entry.getValue());
+            }
+            documentTerms.put(id, new HashSet<>(termWeights.keySet()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document from the index
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every document
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            grams.clear();
+            documentTerms.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of indexed documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Documents matching every query term, most relevant first
+     */
+    public List<SearchHit> search(List<String> queryTerms) {
+        return search(queryTerms, Collections.emptyMap());
+    }
+
+    /**
+     * Like search, but a query term also matches the dictionary terms given for it
+     * in alternatives, each scored with its own match factor, e.g. the terms a typo
+     * was probably meant to be
+     */
+    public List<SearchHit> search(List<String> queryTerms, Map<String, Map<String, Double>> alternatives) {
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+                Map<Long, Double> termScores = scoreTerm(queryTerm,
+                        alternatives.getOrDefault(queryTerm, Collections.emptyMap()));
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                hits.add(new SearchHit(entry.getKey(), entry.getValue()));
+            }
+            hits.sort(SearchHit.BY_RELEVANCE);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best score per document for one query term across exact, prefix, substring and alternative matches
+     */
+    private Map<Long, Double> scoreTerm(String queryTerm, Map<String, Double> alternatives) {
+        Map<Long, Double> termScores = new HashMap<>();
+        // The prefix range includes the exact term itself
+        for (String term : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, true).keySet()) {
+            accumulate(termScores, term, term.equals(queryTerm) ? EXACT_MATCH : PREFIX_MATCH);
+        }
+        if (queryTerm.length() >= GRAM_LENGTH) {
+            for (String term : termsContaining(queryTerm)) {
+                if (!term.startsWith(queryTerm)) {
+                    accumulate(termScores, term, SUBSTRING_MATCH);
+                }
+            }
+        }
+        for (Map.Entry<String, Double> alternative : alternatives.entrySet()) {
+            if (postings.containsKey(alternative.getKey())) {
+                accumulate(termScores, alternative.getKey(), alternative.getValue());
+            }
+        }
+        return termScores;
+    }
+
+    private void accumulate(Map<Long, Double> termScores, String term, double matchFactor) {
+        Map<Long, Double> docs = postings.get(term);
+        double idf = Math.log(1.0 + (double) documentTerms.size() / docs.size());
+        for (Map.Entry<Long, Double> posting : docs.entrySet()) {
+            termScores.merge(posting.getKey(), posting.getValue() * matchFactor * idf, Math::max);
+        }
+    }
+
+    /**
+     * Dictionary terms containing the fragment, found by intersecting trigram sets
+     * and verifying the candidates
+     */
+    private Set<String> termsContaining(String fragment) {
+        List<Set<String>> candidateSets = new ArrayList<>();
+        for (String gram : gramsOf(fragment)) {
+            Set<String> terms = grams.get(gram);
+            if (terms == null) {
+                return Collections.emptySet();
+            }
+            candidateSets.add(terms);
+        }
+        candidateSets.sort(Comparator.comparingInt(Set::size));
+
+        Set<String> matches = new HashSet<>();
+        for (String candidate : candidateSets.get(0)) {
+            if (candidate.contains(fragment)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
+    private void removeDocument(long id) {
+        Set<String> terms = documentTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Double> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+                removeGrams(term);
+            }
+        }
+    }
+
+    private void addGrams(String term) {
+        for (String gram : gramsOf(term)) {
+            grams.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+        }
+    }
+
+    private void removeGrams(String term) {
+        for (String gram : gramsOf(term)) {
+            Set<String> terms = grams.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> gramsOf(String term) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+            result.add(term.substring(i, i + GRAM_LENGTH));
+        }
+        return result;
+    }
+}
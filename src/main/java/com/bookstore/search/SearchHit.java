@@ -0,0 +1,40 @@
+package com.bookstore.search;
+
+import java.util.Comparator;
+
+/**
+ * A matching document id and its relevance score
+ */
+public class SearchHit {
+
+    /**
+     * Highest score first, ties broken by ascending id so the order is stable
+     */
+    public static final Comparator<SearchHit> BY_RELEVANCE =
+            Comparator.comparingDouble(SearchHit::getScore).reversed()
+                    .thenComparingLong(SearchHit::getId);
+
+    private final long id;
+    private final double score;
+
+    public SearchHit(long id, double score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "id=" + id +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package com.bookstore.search;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * One typeahead suggestion: a title or an author, and the number of ratings of
+ * its books, which is what suggestions are ranked by
+ */
+@JsonPropertyOrder({"text", "type", "ratingCount"})
+public class Suggestion {
+
+    public enum Type {
+        TITLE,
+        AUTHOR
+    }
+
+    private final String text;
+    private final Type type;
+    private final int ratingCount;
+
+    public Suggestion(String text, Type type, int ratingCount) {
+        this.text = text;
+        this.type = type;
+        this.ratingCount = ratingCount;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+}
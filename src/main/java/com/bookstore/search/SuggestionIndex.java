@@ -0,0 +1,546 @@
+package com.bookstore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe typeahead index of book titles and authors, most popular first.
+ *
+ * Each distinct title and author is one suggestion, scored by the ratings of the
+ * books that have it. A suggestion is keyed by its normalized text from the start
+ * of every word, so "gat" finds "The Great Gatsby". Rather than a tree of nodes,
+ * the keys are one sorted long[] of (suggestion, word offset) pairs pointing into
+ * the normalized texts, so a prefix is a binary-searched range of that array. A
+ * max segment tree over the array yields the range's best suggestions first, in
+ * O(limit log n) however many keys share the prefix, and takes score changes in place.
+ *
+ * New suggestions wait in a short unsorted list that queries scan, and are merged
+ * into the array by the next query once MAX_PENDING of them have queued up, so a
+ * burst of new books costs one merge. Suggestions whose last book is removed stay
+ * in the array, scored below everything, until a merge drops them.
+ */
+public class SuggestionIndex {
+
+    private static final int MAX_PENDING = 256;
+
+    private static final int DEAD = -1;
+
+    // Suggestion id -> display text, normalized key, type, score and number of books having it
+    private final List<String> texts = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    private final List<Suggestion.Type> types = new ArrayList<>();
+    private int[] scores = new int[16];
+    private int[] bookCounts = new int[16];
+
+    // Type and normalized key -> suggestion id, and ids free for reuse
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+    private final List<Integer> freeIds = new ArrayList<>();
+    // Suggestions that at least one book has
+    private int liveCount;
+
+    // Book id -> {title suggestion, author suggestion, ratings}
+    private final Map<Long, int[]> books = new HashMap<>();
+
+    // Sorted (suggestion id << 16 | word offset) keys, and the max segment tree over them:
+    // node i covers children 2i and 2i + 1, leaves start at width and hold array positions
+    private long[] entries = new long[0];
+    private int[] tree = new int[2];
+    private int width = 1;
+
+    // Suggestions not yet merged into entries, and entries of suggestions that have since died
+    private final List<Integer> pending = new ArrayList<>();
+    private final Set<Integer> merged = new HashSet<>();
+    private int deadEntries;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a book's title and author with its number of ratings, replacing whatever was indexed for it before
+     */
+    public void put(long bookId, String title, String author, int ratingCount) {
+        lock.writeLock().lock();
+        try {
+            removeBook(bookId);
+            int titleId = acquire(Suggestion.Type.TITLE, title);
+            int authorId = acquire(Suggestion.Type.AUTHOR, author);
+            books.put(bookId, new int[] { titleId, authorId, ratingCount });
+            addScore(titleId, ratingCount);
+            addScore(authorId, ratingCount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add delta (negative for removed ratings) to the rating count of an indexed book
+     */
+    public void addRatings(long bookId, int delta) {
+        lock.writeLock().lock();
+        try {
+            int[] book = books.get(bookId);
+            if (book != null) {
+                book[2] += delta;
+                addScore(book[0], delta);
+                addScore(book[1], delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Set the rating count of an indexed book, whatever it was before
+     */
+    public void setRatings(long bookId, int ratingCount) {
+        lock.writeLock().lock();
+        try {
+            int[] book = books.get(bookId);
+            if (book != null) {
+                int delta = ratingCount - book[2];
+                book[2] = ratingCount;
+                addScore(book[0], delta);
+                addScore(book[1], delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeBook(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            texts.clear();
+            keys.clear();
+            types.clear();
+            idsByKey.clear();
+            freeIds.clear();
+            scores = new int[16];
+            bookCounts = new int[16];
+            liveCount = 0;
+            books.clear();
+            pending.clear();
+            merged.clear();
+            entries = new long[0];
+            rebuildTree();
+            deadEntries = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of suggestions
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Move every queued suggestion into the sorted array and drop the dead ones
+     */
+    public void merge() {
+        lock.writeLock().lock();
+        try {
+            if (!pending.isEmpty() || deadEntries > 0) {
+                mergePending();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * At most limit titles and authors with a word starting with the normalized
+     * prefix, most ratings first; ties in the order they were first indexed
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String query = String.join(" ", TextAnalyzer.tokenize(prefix));
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        if (needsMerge()) {
+            merge();
+        }
+        lock.readLock().lock();
+        try {
+            List<Integer> found = new ArrayList<>(limit);
+            Set<Integer> seen = new HashSet<>();
+            collectRange(query, limit, found, seen);
+            // Queued suggestions compete with the range's best on the same terms
+            for (int id : pending) {
+                if (score(id) != DEAD && !seen.contains(id) && hasWordStartingWith(keys.get(id), query)) {
+                    found.add(id);
+                }
+            }
+            found.sort(this::compareIds);
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, found.size()));
+            for (int id : found.subList(0, Math.min(limit, found.size()))) {
+                suggestions.add(new Suggestion(texts.get(id), types.get(id), score(id)));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean needsMerge() {
+        lock.readLock().lock();
+        try {
+            return pending.size() >= MAX_PENDING || deadEntries > Math.max(MAX_PENDING, entries.length / 4);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best-first walk of the segment tree over the prefix's range: the heap holds
+     * subtrees ordered by their best entry, so each suggestion found costs a few
+     * pops rather than a pass over the range
+     */
+    private void collectRange(String query, int limit, List<Integer> found, Set<Integer> seen) {
+        int from = firstAtLeast(query, false);
+        int to = firstAtLeast(query, true);
+        if (from >= to) {
+            return;
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.comparing((Integer node) -> tree[node],
+                this::comparePositions));
+        // The canonical subtrees covering [from, to)
+        for (int low = from + width, high = to + width; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                heap.add(low++);
+            }
+            if ((high & 1) == 1) {
+                heap.add(--high);
+            }
+        }
+        while (!heap.isEmpty() && found.size() < limit) {
+            int node = heap.poll();
+            if (positionScore(tree[node]) == DEAD) {
+                break;
+            }
+            if (node >= width) {
+                int id = (int) (entries[node - width] >>> 16);
+                if (seen.add(id)) {
+                    found.add(id);
+                }
+            } else {
+                heap.add(2 * node);
+                heap.add(2 * node + 1);
+            }
+        }
+    }
+
+    /**
+     * First array position whose key is not below the query (past: not below nor starting with it)
+     */
+    private int firstAtLeast(String query, boolean past) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int compared = comparePrefix(entries[mid], query);
+            if (compared < 0 || (past && compared == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the entry's key with the query, 0 meaning the key starts with it
+     */
+    private int comparePrefix(long entry, String query) {
+        String key = keys.get((int) (entry >>> 16));
+        int offset = (int) (entry & 0xFFFF);
+        int length = Math.min(key.length() - offset, query.length());
+        for (int i = 0; i < length; i++) {
+            char a = key.charAt(offset + i);
+            char b = query.charAt(i);
+            if (a != b) {
+                return a < b ? -1 : 1;
+            }
+        }
+        return key.length() - offset < query.length() ? -1 : 0;
+    }
+
+    /**
+     * Order of the sorted array: by key from the offset, then by suggestion id
+     */
+    private int compareEntries(long a, long b) {
+        String keyA = keys.get((int) (a >>> 16));
+        String keyB = keys.get((int) (b >>> 16));
+        int offsetA = (int) (a & 0xFFFF);
+        int offsetB = (int) (b & 0xFFFF);
+        int length = Math.min(keyA.length() - offsetA, keyB.length() - offsetB);
+        for (int i = 0; i < length; i++) {
+            char charA = keyA.charAt(offsetA + i);
+            char charB = keyB.charAt(offsetB + i);
+            if (charA != charB) {
+                return Character.compare(charA, charB);
+            }
+        }
+        int compared = Integer.compare(keyA.length() - offsetA, keyB.length() - offsetB);
+        return compared != 0 ? compared : Long.compare(a >>> 16, b >>> 16);
+    }
+
+    /**
+     * Ranking order: most ratings first, then lowest id
+     */
+    private int compareIds(int a, int b) {
+        return score(a) != score(b) ? Integer.compare(score(b), score(a)) : Integer.compare(a, b);
+    }
+
+    /**
+     * Ranking order of the suggestions at two array positions, then the positions
+     */
+    private int comparePositions(int a, int b) {
+        int scoreA = positionScore(a);
+        int scoreB = positionScore(b);
+        if (scoreA != scoreB) {
+            return Integer.compare(scoreB, scoreA);
+        }
+        if (scoreA == DEAD) {
+            return Integer.compare(a, b);
+        }
+        int compared = Long.compare(entries[a] >>> 16, entries[b] >>> 16);
+        return compared != 0 ? compared : Integer.compare(a, b);
+    }
+
+    /**
+     * Score of the suggestion at an array position; padding past the end and dead suggestions are DEAD
+     */
+    private int positionScore(int position) {
+        return position < entries.length ? score((int) (entries[position] >>> 16)) : DEAD;
+    }
+
+    private int score(int id) {
+        return bookCounts[id] > 0 ? Math.max(scores[id], 0) : DEAD;
+    }
+
+    private int acquire(Suggestion.Type type, String text) {
+        String key = String.join(" ", TextAnalyzer.tokenize(text));
+        Integer id = idsByKey.get(type + ":" + key);
+        if (id == null) {
+            if (freeIds.isEmpty()) {
+                id = texts.size();
+                texts.add(text);
+                keys.add(key);
+                types.add(type);
+                if (id == scores.length) {
+                    scores = Arrays.copyOf(scores, id * 2);
+                    bookCounts = Arrays.copyOf(bookCounts, id * 2);
+                }
+            } else {
+                id = freeIds.remove(freeIds.size() - 1);
+                texts.set(id, text);
+                keys.set(id, key);
+                types.set(id, type);
+            }
+            idsByKey.put(type + ":" + key, id);
+            scores[id] = 0;
+            pending.add(id);
+        }
+        if (bookCounts[id]++ == 0) {
+            liveCount++;
+            if (merged.contains(id)) {
+                // Revived before a merge dropped it
+                deadEntries -= wordStarts(keys.get(id)).size();
+                refresh(id);
+            }
+        }
+        return id;
+    }
+
+    private void removeBook(long bookId) {
+        int[] book = books.remove(bookId);
+        if (book == null) {
+            return;
+        }
+        addScore(book[0], -book[2]);
+        addScore(book[1], -book[2]);
+        release(book[0]);
+        release(book[1]);
+    }
+
+    private void release(int id) {
+        if (--bookCounts[id] == 0) {
+            liveCount--;
+            if (merged.contains(id)) {
+                deadEntries += wordStarts(keys.get(id)).size();
+                refresh(id);
+            }
+        }
+    }
+
+    private void addScore(int id, int delta) {
+        if (delta != 0) {
+            scores[id] += delta;
+            refresh(id);
+        }
+    }
+
+    /**
+     * Re-rank a merged suggestion in the segment tree after its score changed
+     */
+    private void refresh(int id) {
+        if (!merged.contains(id)) {
+            return;
+        }
+        for (int offset : wordStarts(keys.get(id))) {
+            long entry = (long) id << 16 | offset;
+            int low = 0;
+            int high = entries.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareEntries(entries[mid], entry) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int node = (low + width) >> 1; node > 0; node >>= 1) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+    }
+
+    private void mergePending() {
+        List<Long> added = new ArrayList<>();
+        for (int id : pending) {
+            if (bookCounts[id] > 0) {
+                for (int offset : wordStarts(keys.get(id))) {
+                    added.add((long) id << 16 | offset);
+                }
+            }
+        }
+        added.sort(this::compareEntries);
+
+        // Few keys are added at a time: binary search where each goes and copy the runs between
+        long[] result = new long[entries.length + added.size()];
+        int size = 0;
+        int copied = 0;
+        for (long entry : added) {
+            int low = copied;
+            int high = entries.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareEntries(entries[mid], entry) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            size = copyLive(copied, low, result, size);
+            copied = low;
+            result[size++] = entry;
+        }
+        size = copyLive(copied, entries.length, result, size);
+        entries = size == result.length ? result : Arrays.copyOf(result, size);
+
+        // Dead suggestions leave the array now, and their ids can be reused
+        List<Integer> dropped = new ArrayList<>();
+        for (int id : merged) {
+            if (bookCounts[id] == 0) {
+                dropped.add(id);
+            }
+        }
+        for (int id : pending) {
+            if (bookCounts[id] == 0) {
+                dropped.add(id);
+            } else {
+                merged.add(id);
+            }
+        }
+        for (int id : dropped) {
+            merged.remove(id);
+            idsByKey.remove(types.get(id) + ":" + keys.get(id));
+            texts.set(id, null);
+            keys.set(id, null);
+            freeIds.add(id);
+        }
+        pending.clear();
+        deadEntries = 0;
+        rebuildTree();
+    }
+
+    /**
+     * Copy entries[from, to) to the end of result, leaving out dead suggestions, and return the new size
+     */
+    private int copyLive(int from, int to, long[] result, int size) {
+        if (deadEntries == 0) {
+            System.arraycopy(entries, from, result, size, to - from);
+            return size + to - from;
+        }
+        for (int i = from; i < to; i++) {
+            if (bookCounts[(int) (entries[i] >>> 16)] > 0) {
+                result[size++] = entries[i];
+            }
+        }
+        return size;
+    }
+
+    private void rebuildTree() {
+        width = 1;
+        while (width < entries.length) {
+            width <<= 1;
+        }
+        tree = new int[2 * width];
+        for (int position = 0; position < width; position++) {
+            tree[width + position] = position;
+        }
+        for (int node = width - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    private int better(int a, int b) {
+        return comparePositions(a, b) <= 0 ? a : b;
+    }
+
+    /**
+     * Offsets of the words of a normalized key, which are separated by single spaces
+     */
+    private static List<Integer> wordStarts(String key) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < key.length() && i <= 0xFFFF; i++) {
+            if (i == 0 || key.charAt(i - 1) == ' ') {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    private static boolean hasWordStartingWith(String key, String query) {
+        for (int offset : wordStarts(key)) {
+            if (key.startsWith(query, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,55 @@
+package com.bookstore.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into normalized search terms: accents are stripped, case is folded
+ * and anything that is not a letter or digit separates terms.
+ */
+public final class TextAnalyzer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextAnalyzer() {}
+
+    /**
+     * Fold case and strip accents, e.g. "Brontë" becomes "bronte"
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalized terms of the text, in order of appearance
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(normalize(text))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Terms of an ISBN: its hyphen-separated groups plus the compact digit string,
+     * so both "978-0-452-28423-4" and "9780452284234" find the book
+     */
+    public static List<String> tokenizeIsbn(String isbn) {
+        List<String> terms = tokenize(isbn);
+        if (terms.size() > 1) {
+            terms.add(String.join("", terms));
+        }
+        return terms;
+    }
+}
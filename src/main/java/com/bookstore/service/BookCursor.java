@@ -0,0 +1,106 @@
+package com.bookstore.service;
+
+import com.bookstore.catalog.RangePosition;
+import com.bookstore.search.SearchHit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque continuation tokens used for keyset pagination.
+ * A token carries the id of the last book returned; the next window starts after it.
+ * Tokens for relevance-ranked results also carry that book's score, and tokens
+ * for sorted results the order they belong to and that book's sort key.
+ */
+final class BookCursor {
+    
+    private static final String PREFIX = "b1:";
+    private static final String RANKED_PREFIX = "s1:";
+    private static final String SORTED_PREFIX = "o1:";
+    
+    private BookCursor() {}
+    
+    static String encode(Long lastId) {
+        return toToken(PREFIX + lastId);
+    }
+    
+    static String encodeRanked(SearchHit lastHit) {
+        return toToken(RANKED_PREFIX + lastHit.getScore() + ":" + lastHit.getId());
+    }
+    
+    /**
+     * Token for the position after which the next window in the given order starts
+     */
+    static String encodeSorted(String order, RangePosition last) {
+        String key = last.getKey() != null ? last.getKey().toString() : "";
+        return toToken(SORTED_PREFIX + order + ":" + key + ":" + last.getId());
+    }
+    
+    /**
+     * Returns the id to continue after, or 0 for a missing cursor (first page)
+     */
+    static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String raw = fromToken(cursor);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException and Base64 errors are both IllegalArgumentExceptions
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    /**
+     * Returns the ranked position to continue after, or null for a missing cursor (first page)
+     */
+    static SearchHit decodeRanked(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = fromToken(cursor);
+            int separator = raw.lastIndexOf(':');
+            if (!raw.startsWith(RANKED_PREFIX) || separator <= RANKED_PREFIX.length()) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            double score = Double.parseDouble(raw.substring(RANKED_PREFIX.length(), separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new SearchHit(id, score);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    /**
+     * Returns the sorted position to continue after, or null for a missing cursor (first page).
+     * A cursor taken from a window in another order is rejected.
+     */
+    static RangePosition decodeSorted(String cursor, String order) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = fromToken(cursor).split(":", -1);
+            if (parts.length != 4 || !(parts[0] + ":").equals(SORTED_PREFIX) || !parts[1].equals(order)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            Long key = parts[2].isEmpty() ? null : Long.parseLong(parts[2]);
+            return new RangePosition(key, Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    private static String toToken(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String fromToken(String token) {
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams the whole catalog as NDJSON or CSV.
+ *
+ * Books are read through a database cursor and written one at a time. Every
+ * chunk the output is flushed and the persistence context is cleared, so heap
+ * use does not grow with the size of the catalog.
+ */
+@Service
+public class BookExportService {
+
+    private static final String CSV_HEADER = "id,title,author,isbn,price,publicationYear,description," +
+            "stockQuantity,averageRating,ratingCount,createdAt,updatedAt";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${bookstore.export.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Write every book as one JSON object per line
+     */
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream out) throws IOException {
+        Writer writer = writerFor(out);
+        export(writer, book -> {
+            writer.write(objectMapper.writeValueAsString(book));
+            writer.write('\n');
+        });
+    }
+
+    /**
+     * Write every book as an RFC 4180 CSV row, preceded by a header row
+     */
+    @Transactional(readOnly = true)
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer writer = writerFor(out);
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        export(writer, book -> {
+            writer.write(String.valueOf(book.getId()));
+            writeCsvField(writer, book.getTitle());
+            writeCsvField(writer, book.getAuthor());
+            writeCsvField(writer, book.getIsbn());
+            writeCsvField(writer, book.getPrice());
+            writeCsvField(writer, book.getPublicationYear());
+            writeCsvField(writer, book.getDescription());
+            writeCsvField(writer, book.getStockQuantity());
+            writeCsvField(writer, book.getAverageRating());
+            writeCsvField(writer, book.getRatingCount());
+            writeCsvField(writer, book.getCreatedAt());
+            writeCsvField(writer, book.getUpdatedAt());
+            writer.write("\r\n");
+        });
+    }
+
+    private void export(Writer writer, RowWriter rowWriter) throws IOException {
+        try (Stream<Book> books = bookRepository.streamAllOrderById()) {
+            Iterator<Book> iterator = books.iterator();
+            int rowsInChunk = 0;
+            while (iterator.hasNext()) {
+                rowWriter.write(iterator.next());
+                if (++rowsInChunk == chunkSize) {
+                    writer.flush();
+                    // Drop the exported entities so the persistence context stays small
+                    entityManager.clear();
+                    rowsInChunk = 0;
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private static Writer writerFor(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static void writeCsvField(Writer writer, Object value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Book book) throws IOException;
+    }
+}
@@ -0,0 +1,298 @@
+package com.bookstore.service;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of books from a streamed JSON or CSV body.
+ *
+ * Rows are parsed one at a time and collected into batches. For each batch the
+ * ISBNs are checked for duplicates with one IN query, and the valid rows are
+ * inserted in a single transaction using JDBC batching. A rejected row is
+ * reported and skipped; it never aborts the rest of the load.
+ */
+@Service
+public class BookImportService {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${bookstore.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${bookstore.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    /**
+     * Import a JSON array of books, or a stream of JSON objects such as NDJSON
+     */
+    public ImportReport importJson(InputStream in) throws IOException {
+        ImportReport report = new ImportReport(maxReportedErrors);
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        long rowNumber = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            boolean inRow = false;
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY) {
+                    token = parser.nextToken();
+                }
+                while (token == JsonToken.START_OBJECT) {
+                    rowNumber++;
+                    report.rowReceived();
+                    inRow = true;
+                    JsonNode node = parser.readValueAsTree();
+                    inRow = false;
+                    try {
+                        Book book = objectMapper.treeToValue(node, Book.class);
+                        addRow(batch, new ImportRow(rowNumber, book), report);
+                    } catch (JsonProcessingException e) {
+                        report.rowFailed(rowNumber, node.path("isbn").asText(null), "Invalid row: " + e.getOriginalMessage());
+                    }
+                    token = parser.nextToken();
+                }
+                if (token != null && token != JsonToken.END_ARRAY) {
+                    report.rowFailed(rowNumber + 1, null, "Expected a JSON object but found " + token);
+                }
+            } catch (JsonProcessingException e) {
+                // Parsing cannot resume after a syntax error; the rows before it are still imported
+                report.rowFailed(inRow ? rowNumber : rowNumber + 1, null,
+                        "Malformed JSON at line " + e.getLocation().getLineNr() + ", import stopped: " + e.getOriginalMessage());
+            }
+        }
+        flushBatch(batch, report);
+        return report;
+    }
+
+    /**
+     * Import CSV with a header row naming the columns. Recognized columns are
+     * title, author, isbn, price, publicationYear, description and stockQuantity;
+     * any others (such as those of the CSV export) are ignored.
+     */
+    public ImportReport importCsv(InputStream in) throws IOException {
+        ImportReport report = new ImportReport(maxReportedErrors);
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        CsvReader csv = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            return report;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+
+        long rowNumber = 0;
+        List<String> record;
+        while ((record = nextRecord(csv, rowNumber, report)) != null) {
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue;
+            }
+            rowNumber++;
+            report.rowReceived();
+            String isbn = field(record, columns, "isbn");
+            try {
+                Book book = new Book();
+                book.setTitle(field(record, columns, "title"));
+                book.setAuthor(field(record, columns, "author"));
+                book.setIsbn(isbn);
+                String price = field(record, columns, "price");
+                book.setPrice(price != null ? new BigDecimal(price) : null);
+                String year = field(record, columns, "publicationYear");
+                book.setPublicationYear(year != null ? Integer.valueOf(year) : null);
+                book.setDescription(field(record, columns, "description"));
+                String stock = field(record, columns, "stockQuantity");
+                book.setStockQuantity(stock != null ? Integer.valueOf(stock) : 0);
+                addRow(batch, new ImportRow(rowNumber, book), report);
+            } catch (NumberFormatException e) {
+                report.rowFailed(rowNumber, isbn, "Invalid number: " + e.getMessage());
+            }
+        }
+        flushBatch(batch, report);
+        return report;
+    }
+
+    /**
+     * The next CSV record, or null at the end of the input or after a malformed
+     * record, which is reported against the row it would have been
+     */
+    private List<String> nextRecord(CsvReader csv, long rowNumber, ImportReport report) throws IOException {
+        try {
+            return csv.readRecord();
+        } catch (CsvReader.MalformedCsvException e) {
+            // Reading cannot resume after it; the rows before it are still imported
+            report.rowReceived();
+            report.rowFailed(rowNumber + 1, null,
+                    "Malformed CSV at line " + e.getLine() + ", import stopped: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void addRow(List<ImportRow> batch, ImportRow row, ImportReport report) {
+        row.book.setId(null);
+        row.book.setVersion(null);
+        row.book.clearRatingStats();
+        Set<ConstraintViolation<Book>> violations = validator.validate(row.book);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            report.rowFailed(row.number, row.book.getIsbn(), message);
+            return;
+        }
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            flushBatch(batch, report);
+        }
+    }
+
+    /**
+     * Insert one batch: drop rows whose ISBN repeats within the batch or already
+     * exists, then persist the rest in one transaction with JDBC batching
+     */
+    private void flushBatch(List<ImportRow> batch, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> isbns = new HashSet<>();
+        for (ImportRow row : batch) {
+            isbns.add(row.book.getIsbn());
+        }
+        Set<String> existing = bookRepository.findExistingIsbns(isbns);
+
+        Set<String> seen = new HashSet<>();
+        List<ImportRow> accepted = new ArrayList<>(batch.size());
+        for (ImportRow row : batch) {
+            String isbn = row.book.getIsbn();
+            if (existing.contains(isbn)) {
+                report.rowFailed(row.number, isbn, "Book with ISBN " + isbn + " already exists");
+            } else if (!seen.add(isbn)) {
+                report.rowFailed(row.number, isbn, "Duplicate ISBN " + isbn + " in import");
+            } else {
+                accepted.add(row);
+            }
+        }
+
+        insert(accepted, report);
+        batch.clear();
+    }
+
+    /**
+     * Persist rows in one transaction. If it fails (typically a unique constraint violation
+     * from a concurrent insert, or a value too long for its column), retry them one at a time
+     * so only the bad rows are reported.
+     */
+    private void insert(List<ImportRow> rows, ImportReport report) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                for (ImportRow row : rows) {
+                    entityManager.persist(row.book);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                // Delivered to listeners once the batch has committed
+                for (ImportRow row : rows) {
+                    eventPublisher.publishEvent(BookChangedEvent.created(row.book));
+                }
+            });
+            report.rowsImported(rows.size());
+        } catch (RuntimeException e) {
+            // The rolled back persist left sequence ids and versions on the books
+            for (ImportRow row : rows) {
+                row.book.setId(null);
+                row.book.setVersion(null);
+            }
+            if (rows.size() > 1) {
+                for (ImportRow row : rows) {
+                    insert(List.of(row), report);
+                }
+                return;
+            }
+            ImportRow row = rows.get(0);
+            report.rowFailed(row.number, row.book.getIsbn(), "Insert failed: " + rootMessage(e));
+        }
+    }
+
+    /**
+     * First line of the innermost cause's message, which names the failing column or constraint
+     */
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        String message = String.valueOf(cause.getMessage());
+        int newline = message.indexOf('\n');
+        return newline >= 0 ? message.substring(0, newline) : message;
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static class ImportRow {
+
+        private final long number;
+        private final Book book;
+
+        ImportRow(long number, Book book) {
+            this.number = number;
+            this.book = book;
+        }
+    }
+}
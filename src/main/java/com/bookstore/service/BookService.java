@@ -1,11 +1,36 @@
 package com.bookstore.service;
 
+import com.bookstore.cache.BookCache;
+import com.bookstore.catalog.BookCatalog;
+import com.bookstore.catalog.BookFacets;
+import com.bookstore.catalog.BookLeaderboards;
+import com.bookstore.catalog.BookRanges;
+import com.bookstore.catalog.CatalogSnapshot;
+import com.bookstore.catalog.FacetQuery;
+import com.bookstore.catalog.FacetResult;
+import com.bookstore.catalog.RangeQuery;
+import com.bookstore.catalog.RangeResult;
+import com.bookstore.event.BookChangedEvent;
 import com.bookstore.model.Book;
+import com.bookstore.model.BookLookup;
+import com.bookstore.model.BookSummary;
 import com.bookstore.repository.BookRepository;
+import com.bookstore.search.BookSearchIndex;
+import com.bookstore.search.BookSuggester;
+import com.bookstore.search.SearchHit;
+import com.bookstore.search.Suggestion;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -14,25 +39,70 @@ public class BookService {
     @Autowired
     private BookRepository bookRepository;
     
+    @Autowired
+    private BookSearchIndex searchIndex;
+    
+    @Autowired
+    private BookSuggester suggester;
+    
+    @Autowired
+    private BookCache bookCache;
+    
+    @Autowired
+    private BookCatalog bookCatalog;
+    
+    @Autowired
+    private BookLeaderboards leaderboards;
+    
+    @Autowired
+    private BookFacets bookFacets;
+    
+    @Autowired
+    private BookRanges bookRanges;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     /**
-     * Get all books
+     * Get all books, from the in-memory catalog once it is ready.
+     * The returned list is read-only.
      */
     public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+        CatalogSnapshot catalog = readyCatalog();
+        return catalog != null ? catalog.books() : bookRepository.findAll();
     }
     
     /**
-     * Get book by ID
+     * Get book by ID, served from the book cache when possible
      */
     public Optional<Book> getBookById(Long id) {
-        return bookRepository.findById(id);
+        return bookCache.getById(id, bookRepository::findById);
+    }
+    
+    /**
+     * Get many books by id, in the order given (duplicates included), each either
+     * found or marked not found. Books missing from the book cache are loaded with one query.
+     */
+    public List<BookLookup> getBooksByIds(List<Long> ids) {
+        Map<Long, Book> booksById = bookCache.getAllById(new LinkedHashSet<>(ids), missing -> {
+            Map<Long, Book> loaded = new HashMap<>();
+            for (Book book : bookRepository.findAllById(missing)) {
+                loaded.put(book.getId(), book);
+            }
+            return loaded;
+        });
+        List<BookLookup> lookups = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            lookups.add(new BookLookup(id, booksById.get(id)));
+        }
+        return lookups;
     }
     
     /**
-     * Get book by ISBN
+     * Get book by ISBN, served from the book cache when possible
      */
     public Optional<Book> getBookByIsbn(String isbn) {
-        return bookRepository.findByIsbn(isbn);
+        return bookCache.getByIsbn(isbn, bookRepository::findById, bookRepository::findByIsbn);
     }
     
     /**
@@ -42,11 +112,15 @@ public class BookService {
         if (bookRepository.existsByIsbn(book.getIsbn())) {
             throw new RuntimeException("Book with ISBN " + book.getIsbn() + " already exists");
         }
-        return bookRepository.save(book);
+        book.clearRatingStats();
+        Book savedBook = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.created(savedBook));
+        return savedBook;
     }
     
     /**
-     * Update an existing book
+     * Update an existing book. The write is checked against the book's version, so it
+     * throws OptimisticLockingFailureException rather than undo a concurrent stock change.
      */
     public Book updateBook(Long id, Book bookDetails) {
         Book book = bookRepository.findById(id)
@@ -66,7 +140,9 @@ public class BookService {
         book.setDescription(bookDetails.getDescription());
         book.setStockQuantity(bookDetails.getStockQuantity());
         
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.updated(savedBook));
+        return savedBook;
     }
     
     /**
@@ -76,19 +152,34 @@ public class BookService {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         bookRepository.delete(book);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(book));
     }
     
     /**
-     * Search books by author or title
+     * Search books by title, author, ISBN or description, most relevant first
      */
     public List<Book> searchBooks(String searchTerm) {
-        return bookRepository.findByAuthorOrTitleContainingIgnoreCase(searchTerm);
+        return loadInOrder(rankedSearch(searchTerm, false));
+    }
+    
+    /**
+     * Titles and authors with a word starting with the prefix, most rated first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (!suggester.isReady()) {
+            throw new IllegalStateException("The catalog is still loading");
+        }
+        return suggester.suggest(prefix, limit);
     }
     
     /**
      * Get books by author
      */
     public List<Book> getBooksByAuthor(String author) {
+        CatalogSnapshot catalog = readyCatalog();
+        if (catalog != null) {
+            return catalog.select(catalog.authorContains(author));
+        }
         return bookRepository.findByAuthorContainingIgnoreCase(author);
     }
     
@@ -96,6 +187,10 @@ public class BookService {
      * Get books by title
      */
     public List<Book> getBooksByTitle(String title) {
+        CatalogSnapshot catalog = readyCatalog();
+        if (catalog != null) {
+            return catalog.select(catalog.titleContains(title));
+        }
         return bookRepository.findByTitleContainingIgnoreCase(title);
     }
     
@@ -103,17 +198,240 @@ public class BookService {
      * Get books in stock
      */
     public List<Book> getBooksInStock() {
+        CatalogSnapshot catalog = readyCatalog();
+        if (catalog != null) {
+            return catalog.select(catalog.inStock());
+        }
         return bookRepository.findByStockQuantityGreaterThan(0);
     }
     
     /**
-     * Update stock quantity
+     * Get a window of summaries of all books, continuing after the given cursor
+     */
+    public CursorPage<BookSummary> getBooksPage(String cursor, int limit) {
+        return page(cursor, limit, (afterId, window) -> {
+            CatalogSnapshot catalog = readyCatalog();
+            if (catalog != null) {
+                return summaries(catalog.window(afterId, window.max(), catalog.all()));
+            }
+            return bookRepository.findSummariesAfter(afterId, window);
+        });
+    }
+    
+    /**
+     * Get a window of summaries of search results in relevance order, continuing after the given cursor.
+     * A fuzzy search also matches title and author words a typo or two away from the search terms.
+     */
+    public CursorPage<BookSummary> searchBooksPage(String searchTerm, boolean fuzzy, String cursor, int limit) {
+        List<SearchHit> hits = rankedSearch(searchTerm, fuzzy);
+        SearchHit after = BookCursor.decodeRanked(cursor);
+        int from = 0;
+        if (after != null) {
+            int position = Collections.binarySearch(hits, after, SearchHit.BY_RELEVANCE);
+            from = position >= 0 ? position + 1 : -position - 1;
+        }
+        int to = Math.min(from + limit, hits.size());
+        
+        List<BookSummary> books = loadSummariesInOrder(hits.subList(from, to));
+        String nextCursor = to < hits.size() ? BookCursor.encodeRanked(hits.get(to - 1)) : null;
+        return new CursorPage<>(books, nextCursor);
+    }
+    
+    /**
+     * Get a window of summaries of books by author, continuing after the given cursor
+     */
+    public CursorPage<BookSummary> getBooksByAuthorPage(String author, String cursor, int limit) {
+        return page(cursor, limit, (afterId, window) -> {
+            CatalogSnapshot catalog = readyCatalog();
+            if (catalog != null) {
+                return summaries(catalog.window(afterId, window.max(), catalog.authorContains(author)));
+            }
+            return bookRepository.findSummariesByAuthorAfter(author, afterId, window);
+        });
+    }
+    
+    /**
+     * Get a window of summaries of books in stock, continuing after the given cursor
+     */
+    public CursorPage<BookSummary> getBooksInStockPage(String cursor, int limit) {
+        return page(cursor, limit, (afterId, window) -> {
+            CatalogSnapshot catalog = readyCatalog();
+            if (catalog != null) {
+                return summaries(catalog.window(afterId, window.max(), catalog.inStock()));
+            }
+            return bookRepository.findSummariesInStockAfter(0, afterId, window);
+        });
+    }
+    
+    /**
+     * Get a window of summaries of the books matching the facet filters, continuing
+     * after the given cursor, with the total and the counts of every facet value
+     */
+    public FacetPage getFacetPage(FacetQuery query, String cursor, int limit, int facetLimit) {
+        if (!bookFacets.isReady()) {
+            throw new IllegalStateException("The catalog is still loading");
+        }
+        FacetResult result = bookFacets.search(query, BookCursor.decode(cursor), limit, facetLimit);
+        List<BookSummary> books = summaries(result.getBooks());
+        String nextCursor = result.hasMore() ? BookCursor.encode(books.get(books.size() - 1).getId()) : null;
+        return new FacetPage(result.getTotal(), books, result.getFacets(), nextCursor);
+    }
+    
+    /**
+     * Get a window of summaries of the books within the price and year ranges, in the
+     * query's sort order, continuing after the given cursor
+     */
+    public CursorPage<BookSummary> getRangePage(RangeQuery query, String cursor, int limit) {
+        if (!bookRanges.isReady()) {
+            throw new IllegalStateException("The catalog is still loading");
+        }
+        String order = query.getSort().name().toLowerCase(Locale.ROOT) + (query.isDescending() ? ".desc" : ".asc");
+        RangeResult result = bookRanges.search(query, BookCursor.decodeSorted(cursor, order), limit);
+        String nextCursor = result.hasMore() ? BookCursor.encodeSorted(order, result.getLast()) : null;
+        return new CursorPage<>(summaries(result.getBooks()), nextCursor);
+    }
+    
+    /**
+     * Update stock quantity. Like updateBook, throws OptimisticLockingFailureException
+     * when a reservation or release changed the stock after it was read.
      */
     public Book updateStock(Long id, Integer quantity) {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         
         book.setStockQuantity(quantity);
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.updated(savedBook));
+        return savedBook;
+    }
+    
+    /**
+     * Runs a keyset query for one window. One extra row is fetched to find out
+     * whether another window follows without issuing a count query.
+     */
+    private CursorPage<BookSummary> page(String cursor, int limit, WindowQuery query) {
+        long afterId = BookCursor.decode(cursor);
+        List<BookSummary> books = query.fetch(afterId, Limit.of(limit + 1));
+        if (books.size() <= limit) {
+            return new CursorPage<>(books, null);
+        }
+        List<BookSummary> window = books.subList(0, limit);
+        return new CursorPage<>(window, BookCursor.encode(window.get(limit - 1).getId()));
+    }
+    
+    /**
+     * Ranked hits from the search index. Until the index has been built at startup
+     * the LIKE query is used instead, with every hit scored equally and no typo tolerance.
+     */
+    private List<SearchHit> rankedSearch(String searchTerm, boolean fuzzy) {
+        if (searchIndex.isReady()) {
+            return fuzzy ? searchIndex.fuzzySearch(searchTerm) : searchIndex.search(searchTerm);
+        }
+        List<SearchHit> hits = new ArrayList<>();
+        for (Book book : bookRepository.findByAuthorOrTitleContainingIgnoreCase(searchTerm)) {
+            hits.add(new SearchHit(book.getId(), 0.0));
+        }
+        hits.sort(SearchHit.BY_RELEVANCE);
+        return hits;
+    }
+    
+    /**
+     * The best books on a leaderboard, at most limit of them, best first
+     */
+    public List<RankedBook> getTopBooks(BookLeaderboards.Board board, int limit) {
+        List<SearchHit> hits = leaderboards.top(board, limit);
+        Map<Long, Book> booksById = new HashMap<>();
+        for (Book book : loadInOrder(hits)) {
+            booksById.put(book.getId(), book);
+        }
+        List<RankedBook> ranked = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            Book book = booksById.get(hit.getId());
+            if (book != null) {
+                ranked.add(new RankedBook(ranked.size() + 1, hit.getScore(), book));
+            }
+        }
+        return ranked;
+    }
+    
+    /**
+     * The in-memory catalog, or null until it has been built at startup
+     */
+    private CatalogSnapshot readyCatalog() {
+        return bookCatalog.isReady() ? bookCatalog.snapshot() : null;
+    }
+    
+    /**
+     * Load the books for the given hits, keeping the hit order: from the catalog
+     * once it is ready, otherwise with one query
+     */
+    private List<Book> loadInOrder(List<SearchHit> hits) {
+        CatalogSnapshot catalog = readyCatalog();
+        if (catalog != null) {
+            List<Book> books = new ArrayList<>(hits.size());
+            for (SearchHit hit : hits) {
+                Book book = catalog.get(hit.getId());
+                if (book != null) {
+                    books.add(book);
+                }
+            }
+            return books;
+        }
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.getId());
+        }
+        Map<Long, Book> booksById = new HashMap<>();
+        for (Book book : bookRepository.findAllById(ids)) {
+            booksById.put(book.getId(), book);
+        }
+        List<Book> books = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Book book = booksById.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+    
+    /**
+     * Load the summaries for the given hits, keeping the hit order: copied from the
+     * catalog once it is ready, otherwise with one projection query
+     */
+    private List<BookSummary> loadSummariesInOrder(List<SearchHit> hits) {
+        CatalogSnapshot catalog = readyCatalog();
+        if (catalog != null) {
+            return summaries(loadInOrder(hits));
+        }
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.getId());
+        }
+        Map<Long, BookSummary> summariesById = new HashMap<>();
+        for (BookSummary summary : bookRepository.findSummariesByIdIn(ids)) {
+            summariesById.put(summary.getId(), summary);
+        }
+        List<BookSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            BookSummary summary = summariesById.get(id);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+    
+    private static List<BookSummary> summaries(List<Book> books) {
+        List<BookSummary> summaries = new ArrayList<>(books.size());
+        for (Book book : books) {
+            summaries.add(BookSummary.of(book));
+        }
+        return summaries;
+    }
+    
+    @FunctionalInterface
+    private interface WindowQuery {
+        List<BookSummary> fetch(Long afterId, Limit limit);
     }
 }
@@ -0,0 +1,106 @@
+package com.bookstore.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, double-quoted fields
+ * may contain commas, line breaks and doubled quotes.
+ */
+class CsvReader {
+    
+    private final Reader reader;
+    private int pending = -2;
+    // Line of the next character read, counting line feeds
+    private long line = 1;
+    
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+    
+    /**
+     * The next record, or null at end of input. Throws MalformedCsvException when
+     * the input ends inside a quoted field.
+     */
+    List<String> readRecord() throws IOException {
+        long startLine = line;
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new MalformedCsvException(startLine, "Unterminated quoted field");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        pending = next;
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+    
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        int c = reader.read();
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+    
+    /**
+     * Input that is not valid CSV, from the given line on; no further records can be read
+     */
+    static class MalformedCsvException extends IOException {
+        
+        private final long line;
+        
+        MalformedCsvException(long line, String message) {
+            super(message);
+            this.line = line;
+        }
+        
+        /**
+         * Line on which the malformed record starts
+         */
+        long getLine() {
+            return line;
+        }
+    }
+}
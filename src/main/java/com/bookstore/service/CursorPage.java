@@ -0,0 +1,30 @@
+package com.bookstore.service;
+
+import java.util.List;
+
+/**
+ * One window of a keyset-paginated result together with the opaque cursor
+ * that continues after its last element (null when there is nothing more)
+ */
+public class CursorPage<T> {
+    
+    private final List<T> items;
+    private final String nextCursor;
+    
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<T> getItems() {
+        return items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
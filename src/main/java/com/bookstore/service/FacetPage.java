@@ -0,0 +1,44 @@
+package com.bookstore.service;
+
+import com.bookstore.model.BookSummary;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One window of faceted results: the total number of matches, the summaries in
+ * this window and the facet counts. The continuation cursor travels in headers.
+ */
+public class FacetPage {
+
+    private final int total;
+    private final List<BookSummary> books;
+    private final Map<String, Map<String, Integer>> facets;
+    private final String nextCursor;
+
+    public FacetPage(int total, List<BookSummary> books, Map<String, Map<String, Integer>> facets,
+                     String nextCursor) {
+        this.total = total;
+        this.books = books;
+        this.facets = facets;
+        this.nextCursor = nextCursor;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public List<BookSummary> getBooks() {
+        return books;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    @JsonIgnore
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
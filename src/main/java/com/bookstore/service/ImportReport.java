@@ -0,0 +1,80 @@
+package com.bookstore.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: row counts plus the errors of rejected rows.
+ * Only the first maxReportedErrors errors are kept; failed counts every one.
+ */
+public class ImportReport {
+    
+    private final int maxReportedErrors;
+    private long received;
+    private long imported;
+    private long failed;
+    private final List<RowError> errors = new ArrayList<>();
+    
+    public ImportReport(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+    
+    void rowReceived() {
+        received++;
+    }
+    
+    void rowsImported(int count) {
+        imported += count;
+    }
+    
+    void rowFailed(long row, String isbn, String message) {
+        failed++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(row, isbn, message));
+        }
+    }
+    
+    public long getReceived() {
+        return received;
+    }
+    
+    public long getImported() {
+        return imported;
+    }
+    
+    public long getFailed() {
+        return failed;
+    }
+    
+    public List<RowError> getErrors() {
+        return errors;
+    }
+    
+    /**
+     * Why a row (1-based, in input order) was not imported
+     */
+    public static class RowError {
+        
+        private final long row;
+        private final String isbn;
+        private final String message;
+        
+        public RowError(long row, String isbn, String message) {
+            this.row = row;
+            this.isbn = isbn;
+            this.message = message;
+        }
+        
+        public long getRow() {
+            return row;
+        }
+        
+        public String getIsbn() {
+            return isbn;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+    }
+}
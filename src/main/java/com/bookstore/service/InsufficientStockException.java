@@ -0,0 +1,11 @@
+package com.bookstore.service;
+
+/**
+ * Thrown when a reservation asks for more units than the book has in stock
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(Long bookId, int quantity) {
+        super("Insufficient stock to reserve " + quantity + " of book " + bookId);
+    }
+}
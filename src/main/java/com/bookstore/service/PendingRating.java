@@ -0,0 +1,44 @@
+package com.bookstore.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * A rating accepted by the write-behind pipeline but not yet written.
+ * It gets an id only once the flusher has inserted it.
+ */
+public class PendingRating {
+
+    private final Long bookId;
+    private final int rating;
+    private final String reviewerName;
+    private final String comment;
+    private final LocalDateTime acceptedAt;
+
+    PendingRating(Long bookId, int rating, String reviewerName, String comment) {
+        this.bookId = bookId;
+        this.rating = rating;
+        this.reviewerName = reviewerName;
+        this.comment = comment;
+        this.acceptedAt = LocalDateTime.now();
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public String getReviewerName() {
+        return reviewerName;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public LocalDateTime getAcceptedAt() {
+        return acceptedAt;
+    }
+}
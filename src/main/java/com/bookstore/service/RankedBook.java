@@ -0,0 +1,31 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+
+/**
+ * A book's place on a leaderboard and the score it is ranked by
+ */
+public class RankedBook {
+
+    private final int rank;
+    private final double score;
+    private final Book book;
+
+    public RankedBook(int rank, double score, Book book) {
+        this.rank = rank;
+        this.score = score;
+        this.book = book;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+}
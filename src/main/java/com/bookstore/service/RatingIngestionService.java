@@ -0,0 +1,333 @@
+package com.bookstore.service;
+
+import com.bookstore.catalog.BookCatalog;
+import com.bookstore.event.RatingChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.model.Rating;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.RatingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind ingestion of new ratings, enabled with bookstore.ratings.write-behind.enabled.
+ *
+ * A submitted rating is validated in memory and put on a bounded queue; a single
+ * flusher thread inserts whatever has queued up using JDBC batching, adjusts the
+ * rating aggregates once per book and publishes the usual RatingChangedEvents.
+ * When the queue stays full for the offer timeout the rating is refused, so
+ * callers see backpressure instead of unbounded memory growth.
+ *
+ * Duplicate (book, reviewer) pairs are refused up front. Pairs still waiting in
+ * the queue are held in an exact set. Persisted pairs are summarised by a Bloom
+ * filter, seeded once at startup: a miss proves the pair is new, and only a hit
+ * (a real duplicate or a rare false positive) is confirmed with the database.
+ */
+@Service
+public class RatingIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingIngestionService.class);
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${bookstore.ratings.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bookstore.ratings.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${bookstore.ratings.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${bookstore.ratings.write-behind.offer-timeout:50ms}")
+    private Duration offerTimeout;
+
+    @Value("${bookstore.ratings.write-behind.expected-reviews:1000000}")
+    private long expectedReviews;
+
+    private BlockingQueue<PendingRating> queue;
+
+    // (book, reviewer) keys accepted but not yet written
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private BloomFilter knownReviews;
+
+    private volatile boolean knownReviewsLoaded = false;
+
+    private volatile boolean running = false;
+
+    private Thread flusher;
+
+    private Counter accepted;
+    private Counter duplicates;
+    private Counter queueFull;
+    private Counter written;
+    private Counter failed;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        knownReviews = new BloomFilter(expectedReviews, 0.01);
+        accepted = outcomeCounter("accepted");
+        duplicates = outcomeCounter("duplicate");
+        queueFull = outcomeCounter("queue_full");
+        written = outcomeCounter("written");
+        failed = outcomeCounter("failed");
+        Gauge.builder("bookstore.ratings.queue.size", queue, BlockingQueue::size)
+                .description("Ratings accepted but not yet written")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "rating-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Whether ratings should be submitted here instead of written directly
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Accept a rating for writing. Throws IllegalArgumentException when the book
+     * does not exist or the reviewer has already rated it, and
+     * RatingQueueFullException when the queue has no room.
+     */
+    public PendingRating submit(Long bookId, int rating, String reviewerName, String comment) {
+        if (!bookExists(bookId)) {
+            throw new IllegalArgumentException("Book not found with id: " + bookId);
+        }
+        String key = key(bookId, reviewerName);
+        if (!inFlight.add(key)) {
+            duplicates.increment();
+            throw new IllegalArgumentException("You have already rated this book");
+        }
+        boolean queued = false;
+        try {
+            if ((!knownReviewsLoaded || knownReviews.mightContain(key))
+                    && ratingRepository.existsByBookIdAndReviewerKey(bookId, Rating.reviewerKey(reviewerName))) {
+                duplicates.increment();
+                throw new IllegalArgumentException("You have already rated this book");
+            }
+            // Before the key can leave inFlight, so the pair is never unguarded;
+            // if the offer fails this only adds a false positive
+            knownReviews.put(key);
+            PendingRating pending = new PendingRating(bookId, rating, reviewerName, comment);
+            if (!running || !queue.offer(pending, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                queueFull.increment();
+                throw new RatingQueueFullException(queueCapacity);
+            }
+            queued = true;
+            accepted.increment();
+            return pending;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queueFull.increment();
+            throw new RatingQueueFullException(queueCapacity);
+        } finally {
+            if (!queued) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Record every persisted (book, reviewer) pair once startup data is in place
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadKnownReviews() {
+        if (!enabled) {
+            return;
+        }
+        long count = transactionTemplate.execute(status -> {
+            long loaded = 0;
+            try (Stream<Object[]> keys = ratingRepository.streamReviewerKeys()) {
+                for (Object[] row : (Iterable<Object[]>) keys::iterator) {
+                    knownReviews.put(row[0] + ":" + row[1]);
+                    loaded++;
+                }
+            }
+            return loaded;
+        });
+        knownReviewsLoaded = true;
+        log.info("Loaded {} reviewer keys into a {}-bit Bloom filter ({} hashes)",
+                count, knownReviews.getBitCount(), knownReviews.getHashCount());
+    }
+
+    /**
+     * Keep the filter complete for ratings written directly through RatingService
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        if (enabled && event.getType() == RatingChangedEvent.Type.ADDED) {
+            knownReviews.put(key(event.getBookId(), event.getRating().getReviewerName()));
+        }
+    }
+
+    /**
+     * Stop taking ratings and write everything still queued, while the
+     * listeners of the events it publishes are still alive
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() throws InterruptedException {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        if (!queue.isEmpty()) {
+            log.info("Writing {} queued ratings before shutdown", queue.size());
+        }
+        List<PendingRating> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingRating> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // Timed, so the loop notices shutdown without being interrupted mid-write
+                PendingRating first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Whatever queued up while the last batch was written goes out together
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a batch in one transaction. If it fails, retry its ratings one at a
+     * time so a single bad row (e.g. a book deleted meanwhile) is all that is lost.
+     */
+    private void write(List<PendingRating> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            written.increment(batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() > 1) {
+                log.warn("Writing a batch of {} ratings failed, retrying one at a time: {}", batch.size(), e.getMessage());
+                for (PendingRating pending : batch) {
+                    write(List.of(pending));
+                }
+                return;
+            }
+            PendingRating pending = batch.get(0);
+            log.warn("Dropped rating by {} for book {}: {}", pending.getReviewerName(), pending.getBookId(), e.getMessage());
+            failed.increment();
+        }
+        for (PendingRating pending : batch) {
+            inFlight.remove(key(pending.getBookId(), pending.getReviewerName()));
+        }
+    }
+
+    private void insert(List<PendingRating> batch) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+        // book id -> [sum, one, two, three, four, five]
+        Map<Long, int[]> stats = new HashMap<>();
+        List<Rating> saved = new ArrayList<>(batch.size());
+        for (PendingRating pending : batch) {
+            Book book = entityManager.getReference(Book.class, pending.getBookId());
+            Rating rating = new Rating(pending.getRating(), pending.getReviewerName(), pending.getComment(), book);
+            entityManager.persist(rating);
+            saved.add(rating);
+            int[] bookStats = stats.computeIfAbsent(pending.getBookId(), id -> new int[6]);
+            bookStats[0] += pending.getRating();
+            bookStats[pending.getRating()]++;
+        }
+        entityManager.flush();
+
+        for (Map.Entry<Long, int[]> entry : stats.entrySet()) {
+            int[] s = entry.getValue();
+            int count = s[1] + s[2] + s[3] + s[4] + s[5];
+            bookRepository.adjustRatingStats(entry.getKey(), s[0], count, s[1], s[2], s[3], s[4], s[5]);
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            eventPublisher.publishEvent(new RatingChangedEvent(
+                    RatingChangedEvent.Type.ADDED, batch.get(i).getBookId(), saved.get(i)));
+        }
+    }
+
+    private boolean bookExists(Long bookId) {
+        if (bookCatalog.isReady()) {
+            // A book created moments ago may not have been merged into the snapshot yet
+            return bookCatalog.snapshot().get(bookId) != null || bookRepository.existsById(bookId);
+        }
+        return bookRepository.existsById(bookId);
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("bookstore.ratings.ingest")
+                .description("Ratings submitted to the write-behind queue, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String key(Long bookId, String reviewerName) {
+        return bookId + ":" + Rating.reviewerKey(reviewerName);
+    }
+}
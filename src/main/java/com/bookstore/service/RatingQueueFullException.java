@@ -0,0 +1,11 @@
+package com.bookstore.service;
+
+/**
+ * Thrown when the write-behind rating queue stays full for the whole offer timeout
+ */
+public class RatingQueueFullException extends RuntimeException {
+
+    public RatingQueueFullException(int capacity) {
+        super("Rating queue is full (" + capacity + " pending), please retry later");
+    }
+}
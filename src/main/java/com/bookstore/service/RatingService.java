@@ -1,14 +1,24 @@
 package com.bookstore.service;
 
+import com.bookstore.catalog.RecentRatings;
+import com.bookstore.event.RatingChangedEvent;
 import com.bookstore.model.Rating;
 import com.bookstore.model.Book;
+import com.bookstore.model.RatingSummary;
 import com.bookstore.repository.RatingRepository;
 import com.bookstore.repository.BookRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -21,6 +31,12 @@ public class RatingService {
     @Autowired
     private BookRepository bookRepository;
     
+    @Autowired
+    private RecentRatings recentRatings;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     /**
      * Add a new rating for a book
      */
@@ -31,7 +47,7 @@ public class RatingService {
         }
         
         // Check if reviewer has already rated this book
-        if (ratingRepository.existsByBookIdAndReviewerNameIgnoreCase(bookId, reviewerName)) {
+        if (ratingRepository.existsByBookIdAndReviewerKey(bookId, Rating.reviewerKey(reviewerName))) {
             throw new IllegalArgumentException("You have already rated this book");
         }
         
@@ -41,7 +57,10 @@ public class RatingService {
         newRating.setComment(comment);
         newRating.setBook(book.get());
         
-        return ratingRepository.save(newRating);
+        Rating savedRating = ratingRepository.save(newRating);
+        savedRating.setBook(applyRatingStats(bookId, 0, rating));
+        eventPublisher.publishEvent(new RatingChangedEvent(RatingChangedEvent.Type.ADDED, bookId, savedRating));
+        return savedRating;
     }
     
     /**
@@ -70,11 +89,39 @@ public class RatingService {
     }
     
     /**
-     * Get recent ratings across all books
+     * Get the rating statistics of each of the given books with one grouped query,
+     * in the given order; books without ratings (or unknown ids) get empty statistics
      */
     @Transactional(readOnly = true)
-    public List<Rating> getRecentRatings() {
-        return ratingRepository.findTop10ByOrderByCreatedAtDesc();
+    public List<RatingSummary> getRatingSummaries(Collection<Long> bookIds) {
+        Map<Long, RatingSummary> summariesById = new HashMap<>();
+        for (Object[] row : ratingRepository.findRatingStatsByBookIds(bookIds)) {
+            long[] histogram = new long[5];
+            for (int star = 0; star < 5; star++) {
+                histogram[star] = ((Number) row[3 + star]).longValue();
+            }
+            Long bookId = (Long) row[0];
+            summariesById.put(bookId, new RatingSummary(bookId,
+                    ((Number) row[1]).longValue(), ((Number) row[2]).longValue(), histogram));
+        }
+        List<RatingSummary> summaries = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            summaries.add(summariesById.getOrDefault(bookId, RatingSummary.empty(bookId)));
+        }
+        return summaries;
+    }
+    
+    /**
+     * Get up to limit of the most recent ratings across all books, newest first.
+     * Served from memory once the recent-ratings buffer is loaded.
+     */
+    // SUPPORTS: a read from memory should not start a transaction and take a connection
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Rating> getRecentRatings(int limit) {
+        if (recentRatings.isReady()) {
+            return recentRatings.latest(limit);
+        }
+        return ratingRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(limit));
     }
     
     /**
@@ -87,20 +134,34 @@ public class RatingService {
         }
         
         Rating ratingToUpdate = existingRating.get();
+        int previousRating = ratingToUpdate.getRating();
         ratingToUpdate.setRating(rating);
         ratingToUpdate.setComment(comment);
         
-        return ratingRepository.save(ratingToUpdate);
+        Long bookId = ratingToUpdate.getBook().getId();
+        Rating savedRating = ratingRepository.save(ratingToUpdate);
+        if (previousRating != rating) {
+            savedRating.setBook(applyRatingStats(bookId, previousRating, rating));
+        }
+        eventPublisher.publishEvent(
+                new RatingChangedEvent(RatingChangedEvent.Type.UPDATED, bookId, savedRating, previousRating));
+        return savedRating;
     }
     
     /**
      * Delete a rating
      */
     public void deleteRating(Long ratingId) {
-        if (!ratingRepository.existsById(ratingId)) {
+        Optional<Rating> existingRating = ratingRepository.findById(ratingId);
+        if (existingRating.isEmpty()) {
             throw new IllegalArgumentException("Rating not found with id: " + ratingId);
         }
-        ratingRepository.deleteById(ratingId);
+        
+        Rating ratingToDelete = existingRating.get();
+        Long bookId = ratingToDelete.getBook().getId();
+        ratingRepository.delete(ratingToDelete);
+        applyRatingStats(bookId, ratingToDelete.getRating(), 0);
+        eventPublisher.publishEvent(new RatingChangedEvent(RatingChangedEvent.Type.DELETED, bookId, ratingToDelete));
     }
     
     /**
@@ -108,7 +169,7 @@ public class RatingService {
      */
     @Transactional(readOnly = true)
     public boolean hasUserRatedBook(Long bookId, String reviewerName) {
-        return ratingRepository.existsByBookIdAndReviewerNameIgnoreCase(bookId, reviewerName);
+        return ratingRepository.existsByBookIdAndReviewerKey(bookId, Rating.reviewerKey(reviewerName));
     }
     
     /**
@@ -118,4 +179,20 @@ public class RatingService {
     public List<Rating> getAllRatings() {
         return ratingRepository.findAll();
     }
+    
+    /**
+     * Move the book's rating aggregates from one rating value to another.
+     * A value of 0 means "no rating", so (0, r) records a new rating and (r, 0) removes one.
+     * Returns the book reloaded with its new aggregates.
+     */
+    private Book applyRatingStats(Long bookId, int removedRating, int addedRating) {
+        int[] starDeltas = new int[6];
+        starDeltas[removedRating]--;
+        starDeltas[addedRating]++;
+        int countDelta = (addedRating > 0 ? 1 : 0) - (removedRating > 0 ? 1 : 0);
+        
+        bookRepository.adjustRatingStats(bookId, addedRating - removedRating, countDelta,
+                starDeltas[1], starDeltas[2], starDeltas[3], starDeltas[4], starDeltas[5]);
+        return bookRepository.findById(bookId).orElse(null);
+    }
 }
@@ -0,0 +1,231 @@
+package com.bookstore.service;
+
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relative stock changes that can never oversell.
+ *
+ * Every change is a conditional UPDATE, so stock is checked and taken in one
+ * statement and never drops below zero, whatever the concurrency. Requests are
+ * queued on one of bookstore.stock.stripes stripes chosen by book id. Whichever
+ * caller holds a stripe's lock applies everything queued on it in one
+ * transaction, so concurrent requests for a hot book are combined: the
+ * releases for that book become a single UPDATE, and its reservations are first
+ * tried as a single UPDATE for their total. Only when the total does not fit
+ * are they applied one at a time, in arrival order.
+ */
+@Service
+public class StockReservationService {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${bookstore.stock.stripes:64}")
+    private int stripeCount;
+
+    private Stripe[] stripes;
+
+    @PostConstruct
+    void init() {
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Take quantity units of stock, returning the book as it is after the change.
+     * Throws InsufficientStockException when fewer units are in stock, and
+     * IllegalArgumentException when the book does not exist.
+     */
+    public Book reserve(Long bookId, int quantity) {
+        return submit(new StockRequest(bookId, quantity, true));
+    }
+
+    /**
+     * Return quantity units of stock, returning the book as it is after the change.
+     * Throws IllegalArgumentException when the book does not exist.
+     */
+    public Book release(Long bookId, int quantity) {
+        return submit(new StockRequest(bookId, quantity, false));
+    }
+
+    private Book submit(StockRequest request) {
+        if (request.quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Stripe stripe = stripes[Math.floorMod(request.bookId.hashCode(), stripes.length)];
+        stripe.queue.add(request);
+        stripe.lock.lock();
+        try {
+            // Usually a previous lock holder has already applied this request
+            if (!request.done) {
+                drain(stripe);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (request.failure != null) {
+            throw request.failure;
+        }
+        return request.result;
+    }
+
+    /**
+     * Apply every queued request of the stripe in one transaction. Called with the stripe locked.
+     */
+    private void drain(Stripe stripe) {
+        Map<Long, List<StockRequest>> byBook = new LinkedHashMap<>();
+        StockRequest queued;
+        while ((queued = stripe.queue.poll()) != null) {
+            byBook.computeIfAbsent(queued.bookId, id -> new ArrayList<>()).add(queued);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                for (Map.Entry<Long, List<StockRequest>> entry : byBook.entrySet()) {
+                    apply(entry.getKey(), entry.getValue(), now);
+                }
+                Map<Long, Book> books = new HashMap<>();
+                for (Book book : bookRepository.findAllById(byBook.keySet())) {
+                    books.put(book.getId(), book);
+                }
+                for (Map.Entry<Long, List<StockRequest>> entry : byBook.entrySet()) {
+                    complete(entry.getKey(), entry.getValue(), books.get(entry.getKey()));
+                }
+            });
+        } catch (RuntimeException e) {
+            for (List<StockRequest> requests : byBook.values()) {
+                for (StockRequest request : requests) {
+                    request.fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply one book's requests: releases first, then the reservations
+     */
+    private void apply(Long bookId, List<StockRequest> requests, LocalDateTime now) {
+        int released = 0;
+        int reserved = 0;
+        for (StockRequest request : requests) {
+            if (request.reserve) {
+                reserved += request.quantity;
+            } else {
+                released += request.quantity;
+            }
+        }
+        if (released > 0) {
+            bookRepository.releaseStock(bookId, released, now);
+        }
+        if (reserved == 0) {
+            return;
+        }
+        if (bookRepository.reserveStock(bookId, reserved, now) == 1) {
+            for (StockRequest request : requests) {
+                request.granted = request.reserve;
+            }
+            return;
+        }
+        // Stock only falls during this loop, so nothing at least as large as a refused request can fit
+        int smallestRefused = Integer.MAX_VALUE;
+        for (StockRequest request : requests) {
+            if (request.reserve && request.quantity < smallestRefused) {
+                request.granted = bookRepository.reserveStock(bookId, request.quantity, now) == 1;
+                if (!request.granted) {
+                    smallestRefused = request.quantity;
+                }
+            }
+        }
+    }
+
+    /**
+     * Settle one book's requests against its state after the transaction, and
+     * announce the change if stock moved
+     */
+    private void complete(Long bookId, List<StockRequest> requests, Book book) {
+        if (book == null) {
+            for (StockRequest request : requests) {
+                request.fail(new IllegalArgumentException("Book not found with id: " + bookId));
+            }
+            return;
+        }
+        boolean changed = false;
+        for (StockRequest request : requests) {
+            if (!request.reserve || request.granted) {
+                changed = true;
+                request.succeed(book);
+            } else {
+                request.fail(new InsufficientStockException(bookId, request.quantity));
+            }
+        }
+        if (changed) {
+            // Delivered to listeners once the transaction has committed
+            eventPublisher.publishEvent(BookChangedEvent.updated(book));
+        }
+    }
+
+    private static class Stripe {
+
+        private final Queue<StockRequest> queue = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock lock = new ReentrantLock();
+    }
+
+    /**
+     * One caller's request. Outcome fields are written and read under the stripe lock.
+     */
+    private static class StockRequest {
+
+        private final Long bookId;
+        private final int quantity;
+        private final boolean reserve;
+
+        private boolean granted;
+        private boolean done;
+        private Book result;
+        private RuntimeException failure;
+
+        StockRequest(Long bookId, int quantity, boolean reserve) {
+            this.bookId = bookId;
+            this.quantity = quantity;
+            this.reserve = reserve;
+        }
+
+        void succeed(Book book) {
+            result = book;
+            failure = null;
+            done = true;
+        }
+
+        void fail(RuntimeException e) {
+            result = null;
+            failure = e;
+            done = true;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bookstore.view;
+
+import com.bookstore.cache.BookVersions;
+import com.bookstore.model.Book;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.function.Function;
+
+/**
+ * Pre-rendered, pre-escaped HTML fragments for books, one per book.
+ *
+ * Each fragment remembers the book version it was rendered from and is
+ * re-rendered once BookVersions reports a newer one.
+ */
+public class BookFragmentCache {
+
+    private final BookVersions versions;
+    private final Function<Book, String> renderer;
+    private final Cache<Long, Fragment> fragments;
+
+    public BookFragmentCache(BookVersions versions, long maximumSize, Function<Book, String> renderer) {
+        this.versions = versions;
+        this.renderer = renderer;
+        this.fragments = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * The fragment for a book that was loaded while the catalog was at the given version
+     */
+    public String get(Book book, long catalogVersionAtLoad) {
+        long version = versions.bookVersion(book.getId());
+        Fragment cached = fragments.getIfPresent(book.getId());
+        if (cached != null && cached.version == version) {
+            return cached.html;
+        }
+        String html = renderer.apply(book);
+        // Only keep it if no write landed since the book was loaded; otherwise the
+        // loaded data could be older than the version it would be stored under
+        if (versions.catalogVersion() == catalogVersionAtLoad) {
+            fragments.put(book.getId(), new Fragment(version, html));
+        }
+        return html;
+    }
+
+    private static class Fragment {
+
+        private final long version;
+        private final String html;
+
+        Fragment(long version, String html) {
+            this.version = version;
+            this.html = html;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.bookstore.view;
+
+/**
+ * HTML escaping for text written into hand-built pages
+ */
+public final class HtmlEscaper {
+
+    private HtmlEscaper() {}
+
+    /**
+     * Escapes HTML special characters to prevent XSS
+     */
+    public static String escapeHtml(String input) {
+        if (input == null) return "";
+        return input.replace("&", "&amp;")
+                   .replace("<", "&lt;")
+                   .replace(">", "&gt;")
+                   .replace("\"", "&quot;")
+                   .replace("'", "&#x27;");
+    }
+}
@@ -0,0 +1,269 @@
+package com.bookstore.catalog;
+
+import com.bookstore.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * FacetIndex against filtering the books with streams: random catalogs and
+ * random queries must give the same matches, windows and facet counts
+ */
+class FacetIndexTest {
+
+    private static final long[] BAND_EDGES = {1000, 2500, 5000};
+    private static final String[] BAND_LABELS = {"0-10", "10-25", "25-50", "50+"};
+    private static final int FACET_LIMIT = 5;
+
+    @Test
+    void matchesStreamFilter() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            List<Book> books = randomBooks(random, 1 + random.nextInt(3000));
+            FacetIndex index = new FacetIndex(CatalogSnapshot.of(books), BAND_EDGES);
+            for (int q = 0; q < 50; q++) {
+                FacetQuery query = randomQuery(random);
+                long afterId = random.nextInt(4) == 0 ? books.get(random.nextInt(books.size())).getId() : 0;
+                int limit = 1 + random.nextInt(40);
+                assertResult(books, query, afterId, limit, index.search(query, afterId, limit, FACET_LIMIT));
+            }
+        }
+    }
+
+    /**
+     * An index carried over by update() through random edits answers like the
+     * books as they now are; a removal instead asks for a rebuild
+     */
+    @Test
+    void updatesMatchStreamFilter() {
+        Random random = new Random(13);
+        for (int round = 0; round < 20; round++) {
+            List<Book> books = new ArrayList<>(randomBooks(random, 1 + random.nextInt(3000)));
+            CatalogSnapshot snapshot = CatalogSnapshot.of(books);
+            FacetIndex index = new FacetIndex(snapshot, BAND_EDGES);
+            for (int step = 0; step < 30; step++) {
+                Map<Long, Book> changes = new HashMap<>();
+                boolean removed = false;
+                for (int i = 1 + random.nextInt(random.nextBoolean() ? 3 : 200); i > 0; i--) {
+                    int kind = random.nextInt(20);
+                    if (kind == 0) {
+                        long id = books.get(books.size() - 1).getId() + 1 + random.nextInt(3);
+                        Book added = randomBooks(random, 1).get(0);
+                        added.setId(id);
+                        books.add(added);
+                        changes.put(id, added);
+                    } else if (kind == 1 && step % 10 == 9 && books.size() > 1) {
+                        Book gone = books.remove(random.nextInt(books.size()));
+                        changes.put(gone.getId(), null);
+                        // Unless it was only added in this step
+                        removed |= snapshot.get(gone.getId()) != null;
+                    } else {
+                        int at = random.nextInt(books.size());
+                        Book changed = edit(random, books.get(at));
+                        books.set(at, changed);
+                        changes.put(changed.getId(), changed);
+                    }
+                }
+                CatalogSnapshot next = snapshot.apply(changes);
+                FacetIndex updated = index.update(next, changes.keySet());
+                if (removed) {
+                    assertNull(updated, "a removal must ask for a rebuild");
+                    updated = new FacetIndex(next, BAND_EDGES);
+                }
+                for (int q = 0; q < 10; q++) {
+                    FacetQuery query = randomQuery(random);
+                    int limit = 1 + random.nextInt(40);
+                    assertResult(books, query, 0, limit, updated.search(query, 0, limit, FACET_LIMIT));
+                }
+                snapshot = next;
+                index = updated;
+            }
+        }
+    }
+
+    /**
+     * A copy of the book with one or more of its author, year, price and stock changed,
+     * stock mostly without crossing zero
+     */
+    private static Book edit(Random random, Book book) {
+        Book copy = book.copy();
+        int fields = random.nextInt(16);
+        if ((fields & 1) != 0) {
+            String author = "Author " + random.nextInt(45);
+            copy.setAuthor(random.nextInt(5) == 0 ? author.toUpperCase(Locale.ROOT) : author);
+        }
+        if ((fields & 2) != 0) {
+            copy.setPublicationYear(random.nextInt(20) == 0 ? null : 1900 + random.nextInt(126));
+        }
+        if ((fields & 4) != 0) {
+            copy.setPrice(random.nextInt(20) == 0 ? null : BigDecimal.valueOf(100 + random.nextInt(8000), 2));
+        }
+        if ((fields & 8) != 0 || fields == 0) {
+            int stock = book.getStockQuantity() != null ? book.getStockQuantity() : 0;
+            copy.setStockQuantity(random.nextInt(4) == 0 ? random.nextInt(3) : stock + 1);
+        }
+        return copy;
+    }
+
+    private static void assertResult(List<Book> books, FacetQuery query, long afterId, int limit, FacetResult result) {
+        List<Predicate<Book>> filters = List.of(
+                book -> query.getAuthors().isEmpty() || query.getAuthors().stream().map(FacetIndexTest::key)
+                        .anyMatch(key(book.getAuthor())::equals),
+                book -> query.getDecades().isEmpty() || (book.getPublicationYear() != null
+                        && query.getDecades().contains(decade(book.getPublicationYear()))),
+                book -> query.getPriceBands().isEmpty() || (book.getPrice() != null
+                        && query.getPriceBands().contains(band(book.getPrice()))),
+                book -> query.getInStock() == null || query.getInStock() == inStock(book));
+
+        List<Book> matches = books.stream().filter(allExcept(filters, -1)).toList();
+        List<Long> window = matches.stream().map(Book::getId).filter(id -> id > afterId).toList();
+        String context = "query " + describe(query) + " after " + afterId;
+        assertEquals(matches.size(), result.getTotal(), context);
+        assertEquals(window.subList(0, Math.min(limit, window.size())),
+                result.getBooks().stream().map(Book::getId).toList(), context);
+        assertEquals(window.size() > limit, result.hasMore(), context);
+
+        Map<String, Map<String, Integer>> facets = result.getFacets();
+        assertOrderedEquals(authorCounts(books, books.stream().filter(allExcept(filters, 0)).toList()),
+                facets.get(FacetIndex.AUTHOR), context);
+
+        Map<String, Integer> decades = new LinkedHashMap<>();
+        new TreeMap<>(books.stream().filter(book -> book.getPublicationYear() != null)
+                .collect(Collectors.groupingBy(book -> decade(book.getPublicationYear()), Collectors.counting())))
+                .keySet().forEach(decade -> decades.put(String.valueOf(decade), 0));
+        books.stream().filter(allExcept(filters, 1)).filter(book -> book.getPublicationYear() != null)
+                .forEach(book -> decades.merge(String.valueOf(decade(book.getPublicationYear())), 1, Integer::sum));
+        assertOrderedEquals(decades, facets.get(FacetIndex.DECADE), context);
+
+        Map<String, Integer> prices = new LinkedHashMap<>();
+        for (String label : BAND_LABELS) {
+            prices.put(label, 0);
+        }
+        books.stream().filter(allExcept(filters, 2)).filter(book -> book.getPrice() != null)
+                .forEach(book -> prices.merge(band(book.getPrice()), 1, Integer::sum));
+        assertOrderedEquals(prices, facets.get(FacetIndex.PRICE), context);
+
+        Map<String, Integer> stock = new LinkedHashMap<>();
+        List<Book> stockBase = books.stream().filter(allExcept(filters, 3)).toList();
+        stock.put("true", (int) stockBase.stream().filter(FacetIndexTest::inStock).count());
+        stock.put("false", (int) stockBase.stream().filter(book -> !inStock(book)).count());
+        assertOrderedEquals(stock, facets.get(FacetIndex.IN_STOCK), context);
+    }
+
+    /**
+     * Authors among the base books, shown by the name of their lowest-id book,
+     * most books first, then by name, at most FACET_LIMIT of them
+     */
+    private static Map<String, Integer> authorCounts(List<Book> books, List<Book> base) {
+        Map<String, String> names = new HashMap<>();
+        for (Book book : books) {
+            names.putIfAbsent(key(book.getAuthor()), book.getAuthor());
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (Book book : base) {
+            counts.merge(names.get(key(book.getAuthor())), 1, Integer::sum);
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(FACET_LIMIT)
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    private static Predicate<Book> allExcept(List<Predicate<Book>> filters, int skip) {
+        Predicate<Book> result = book -> true;
+        for (int i = 0; i < filters.size(); i++) {
+            if (i != skip) {
+                result = result.and(filters.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static void assertOrderedEquals(Map<String, Integer> expected, Map<String, Integer> actual, String context) {
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()), context);
+    }
+
+    /**
+     * Books with ascending ids and gaps, authors that differ only in case,
+     * and some without a year, price or stock
+     */
+    private static List<Book> randomBooks(Random random, int count) {
+        List<Book> books = new ArrayList<>(count);
+        long id = 0;
+        for (int i = 0; i < count; i++) {
+            id += 1 + random.nextInt(3);
+            String author = "Author " + random.nextInt(40);
+            if (random.nextInt(10) == 0) {
+                author = author.toUpperCase(Locale.ROOT);
+            }
+            BigDecimal price = random.nextInt(20) == 0 ? null : BigDecimal.valueOf(100 + random.nextInt(8000), 2);
+            Book book = new Book("Title " + id, author, "isbn-" + id, price);
+            book.setId(id);
+            book.setPublicationYear(random.nextInt(20) == 0 ? null : 1900 + random.nextInt(126));
+            book.setStockQuantity(random.nextInt(20) == 0 ? null : random.nextInt(4));
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static FacetQuery randomQuery(Random random) {
+        List<String> authors = new ArrayList<>();
+        for (int i = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : 0; i > 0; i--) {
+            // Now and then an author no book has, or one in another case
+            String author = "Author " + random.nextInt(45);
+            authors.add(random.nextBoolean() ? author : author.toLowerCase(Locale.ROOT));
+        }
+        List<Integer> years = new ArrayList<>();
+        for (int i = random.nextInt(3) == 0 ? 1 + random.nextInt(3) : 0; i > 0; i--) {
+            years.add(1900 + random.nextInt(130));
+        }
+        List<String> bands = new ArrayList<>();
+        for (int i = random.nextInt(3) == 0 ? 1 + random.nextInt(2) : 0; i > 0; i--) {
+            bands.add(BAND_LABELS[random.nextInt(BAND_LABELS.length)]);
+        }
+        int stock = random.nextInt(3);
+        return new FacetQuery(authors, years, bands, stock == 0 ? null : stock == 1);
+    }
+
+    private static String describe(FacetQuery query) {
+        return query.getAuthors() + " " + query.getDecades() + " " + query.getPriceBands() + " " + query.getInStock();
+    }
+
+    private static String key(String author) {
+        return author.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int decade(int year) {
+        return Math.floorDiv(year, 10) * 10;
+    }
+
+    private static String band(BigDecimal price) {
+        long cents = price.movePointRight(2).longValueExact();
+        int band = 0;
+        while (band < BAND_EDGES.length && cents >= BAND_EDGES[band]) {
+            band++;
+        }
+        return BAND_LABELS[band];
+    }
+
+    private static boolean inStock(Book book) {
+        return book.getStockQuantity() != null && book.getStockQuantity() > 0;
+    }
+}
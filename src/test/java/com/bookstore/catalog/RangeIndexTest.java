@@ -0,0 +1,260 @@
+package com.bookstore.catalog;
+
+import com.bookstore.catalog.RangeQuery.Sort;
+import com.bookstore.model.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RangeIndex against filtering and sorting every row: random catalogs with few
+ * distinct keys, so most keys are shared by several books, paged through to the
+ * end with the returned positions
+ */
+class RangeIndexTest {
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            CatalogSnapshot snapshot = CatalogSnapshot.of(randomBooks(random, random.nextInt(400)));
+            RangeIndex index = new RangeIndex(snapshot);
+            for (int q = 0; q < 30; q++) {
+                RangeQuery query = randomQuery(random);
+                int limit = 1 + random.nextInt(20);
+                assertEquals(expectedIds(snapshot, query), pageThrough(index, query, limit),
+                        describe(query) + " limit " + limit);
+            }
+        }
+    }
+
+    /**
+     * An index carried over by update() through random edits, some changing only
+     * stock, answers like filtering and sorting every row
+     */
+    @Test
+    void updatesMatchBruteForce() {
+        Random random = new Random(19);
+        for (int round = 0; round < 50; round++) {
+            List<Book> books = randomBooks(random, 1 + random.nextInt(400));
+            CatalogSnapshot snapshot = CatalogSnapshot.of(books);
+            RangeIndex index = new RangeIndex(snapshot);
+            for (int step = 0; step < 20; step++) {
+                Map<Long, Book> changes = new HashMap<>();
+                boolean stockOnly = random.nextBoolean();
+                for (int i = 1 + random.nextInt(5); i > 0; i--) {
+                    Book changed = books.get(random.nextInt(books.size())).copy();
+                    changed.setStockQuantity(random.nextInt(3));
+                    if (!stockOnly) {
+                        edit(random, changed);
+                    }
+                    changes.put(changed.getId(), changed);
+                }
+                CatalogSnapshot next = snapshot.apply(changes);
+                RangeIndex updated = index.update(next, changes.keySet());
+                for (int q = 0; q < 10; q++) {
+                    RangeQuery query = randomQuery(random);
+                    int limit = 1 + random.nextInt(20);
+                    assertEquals(expectedIds(next, query), pageThrough(updated, query, limit),
+                            describe(query) + " limit " + limit);
+                }
+                snapshot = next;
+                index = updated;
+                books = next.books();
+            }
+            // Adding or removing a book asks for a rebuild
+            Book added = book(books.get(books.size() - 1).getId() + 1, "1.00", null);
+            assertNull(index.update(snapshot.apply(Map.of(added.getId(), added)), List.of(added.getId())));
+            Map<Long, Book> removal = new HashMap<>();
+            removal.put(books.get(0).getId(), null);
+            assertNull(index.update(snapshot.apply(removal), removal.keySet()));
+        }
+    }
+
+    @Test
+    void boundsAreInclusive() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(List.of(
+                book(1, "9.99", 1949), book(2, "10.00", 1950), book(3, "10.00", 1950),
+                book(4, "10.01", 1951), book(5, "20.00", null)));
+        RangeIndex index = new RangeIndex(snapshot);
+
+        assertEquals(List.of(2L, 3L), ids(index.search(
+                new RangeQuery(new BigDecimal("10"), new BigDecimal("10"), null, null, Sort.PRICE, false), null, 10)));
+        assertEquals(List.of(2L, 3L), ids(index.search(
+                new RangeQuery(null, null, 1950, 1950, Sort.YEAR, false), null, 10)));
+        // Fractional cents round inwards, so 9.995 excludes 9.99 and 10.005 excludes 10.01
+        assertEquals(List.of(2L, 3L), ids(index.search(
+                new RangeQuery(new BigDecimal("9.995"), new BigDecimal("10.005"), null, null, Sort.PRICE, false), null, 10)));
+        // A year range leaves out books without a year; a price range alone keeps them
+        assertEquals(List.of(4L, 3L, 2L, 1L), ids(index.search(
+                new RangeQuery(null, null, 1900, null, Sort.YEAR, true), null, 10)));
+        assertEquals(List.of(5L, 4L), ids(index.search(
+                new RangeQuery(new BigDecimal("10.01"), null, null, null, Sort.PRICE, true), null, 10)));
+    }
+
+    @Test
+    void emptyRanges() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(List.of(
+                book(1, "5.00", 1990), book(2, "15.00", 2000), book(3, "25.00", 2010)));
+        RangeIndex index = new RangeIndex(snapshot);
+
+        // Between two keys, below the lowest and above the highest
+        for (RangeQuery query : List.of(
+                new RangeQuery(new BigDecimal("6"), new BigDecimal("14"), null, null, Sort.PRICE, false),
+                new RangeQuery(null, new BigDecimal("4.99"), null, null, Sort.YEAR, true),
+                new RangeQuery(null, null, 2011, null, Sort.PRICE, false),
+                new RangeQuery(new BigDecimal("5"), null, 1991, 1999, Sort.CREATED_AT, false))) {
+            RangeResult result = index.search(query, null, 10);
+            assertTrue(result.getBooks().isEmpty(), describe(query));
+            assertFalse(result.hasMore(), describe(query));
+        }
+        RangeResult empty = new RangeIndex(CatalogSnapshot.of(List.of()))
+                .search(new RangeQuery(null, null, null, null, Sort.RATING, true), null, 10);
+        assertTrue(empty.getBooks().isEmpty());
+        assertFalse(empty.hasMore());
+    }
+
+    /**
+     * Every window of the query, each starting after the previous one's last position
+     */
+    private static List<Long> pageThrough(RangeIndex index, RangeQuery query, int limit) {
+        List<Long> ids = new ArrayList<>();
+        RangePosition after = null;
+        while (true) {
+            RangeResult result = index.search(query, after, limit);
+            assertTrue(result.getBooks().size() <= limit);
+            ids.addAll(ids(result));
+            if (!result.hasMore()) {
+                return ids;
+            }
+            assertEquals(limit, result.getBooks().size());
+            after = result.getLast();
+        }
+    }
+
+    /**
+     * Rows within both ranges, by key and then id (both reversed when descending),
+     * followed by the rows without a key by ascending id
+     */
+    private static List<Long> expectedIds(CatalogSnapshot snapshot, RangeQuery query) {
+        return IntStream.range(0, snapshot.size())
+                .filter(row -> within(snapshot.priceCents(row), CatalogSnapshot.NO_PRICE,
+                        query.getMinPriceCents(), query.getMaxPriceCents()))
+                .filter(row -> within(snapshot.year(row), CatalogSnapshot.NO_YEAR,
+                        query.getMinYear() != null ? query.getMinYear().longValue() : null,
+                        query.getMaxYear() != null ? query.getMaxYear().longValue() : null))
+                .boxed()
+                .sorted((a, b) -> {
+                    Long left = RangeIndex.sortKey(snapshot, a, query.getSort());
+                    Long right = RangeIndex.sortKey(snapshot, b, query.getSort());
+                    if (left == null || right == null) {
+                        return left != null ? -1 : right != null ? 1 : Long.compare(snapshot.id(a), snapshot.id(b));
+                    }
+                    int compared = left.equals(right)
+                            ? Long.compare(snapshot.id(a), snapshot.id(b))
+                            : Long.compare(left, right);
+                    return query.isDescending() ? -compared : compared;
+                })
+                .map(snapshot::id)
+                .toList();
+    }
+
+    private static boolean within(long value, long missing, Long min, Long max) {
+        if (min == null && max == null) {
+            return true;
+        }
+        return value != missing && (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    /**
+     * Books with ids spaced apart, a handful of prices, years, averages and creation
+     * times each, and some without a year, ratings or creation time
+     */
+    private static List<Book> randomBooks(Random random, int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book book = book(i * 3L + 1, (1 + random.nextInt(50)) + "." + random.nextInt(3) + "0",
+                    random.nextInt(5) > 0 ? 1900 + random.nextInt(30) : null);
+            if (random.nextBoolean()) {
+                int ratings = 1 + random.nextInt(3);
+                ReflectionTestUtils.setField(book, "ratingCount", ratings);
+                ReflectionTestUtils.setField(book, "ratingSum", (long) ratings + random.nextInt(4 * ratings + 1));
+            }
+            if (random.nextInt(4) > 0) {
+                book.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(random.nextInt(100)));
+            }
+            books.add(book);
+        }
+        return books;
+    }
+
+    /**
+     * Change one of the book's price, year, ratings and creation time, to a key
+     * another book may already have
+     */
+    private static void edit(Random random, Book book) {
+        int field = random.nextInt(4);
+        if (field == 0) {
+            book.setPrice(new BigDecimal((1 + random.nextInt(50)) + "." + random.nextInt(3) + "0"));
+        } else if (field == 1) {
+            book.setPublicationYear(random.nextInt(5) > 0 ? 1900 + random.nextInt(30) : null);
+        } else if (field == 2) {
+            int ratings = random.nextInt(4);
+            ReflectionTestUtils.setField(book, "ratingCount", ratings);
+            ReflectionTestUtils.setField(book, "ratingSum", (long) ratings + random.nextInt(4 * ratings + 1));
+        } else {
+            book.setCreatedAt(random.nextInt(4) > 0
+                    ? LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(random.nextInt(100)) : null);
+        }
+    }
+
+    /**
+     * Open, half-open, closed, single-value and empty ranges, with whole and fractional price bounds
+     */
+    private static RangeQuery randomQuery(Random random) {
+        BigDecimal minPrice = random.nextBoolean() ? BigDecimal.valueOf(random.nextInt(3000), 2) : null;
+        BigDecimal maxPrice = random.nextBoolean() ? BigDecimal.valueOf(3000 + random.nextInt(3000), 2) : null;
+        if (random.nextInt(5) == 0) {
+            minPrice = BigDecimal.valueOf(1 + random.nextInt(50));
+            maxPrice = random.nextBoolean() ? minPrice : minPrice.add(new BigDecimal("0.005"));
+        }
+        Integer minYear = random.nextBoolean() ? 1900 + random.nextInt(15) : null;
+        Integer maxYear = random.nextBoolean() ? 1915 + random.nextInt(15) : null;
+        if (random.nextInt(3) == 0) {
+            minYear = 1890 + random.nextInt(45);
+            maxYear = minYear;
+        }
+        Sort sort = Sort.values()[random.nextInt(Sort.values().length)];
+        return new RangeQuery(minPrice, maxPrice, minYear, maxYear, sort, random.nextBoolean());
+    }
+
+    private static Book book(long id, String price, Integer year) {
+        Book book = new Book("Title " + id, "Author", "isbn-" + id, new BigDecimal(price));
+        book.setId(id);
+        book.setPublicationYear(year);
+        return book;
+    }
+
+    private static List<Long> ids(RangeResult result) {
+        return result.getBooks().stream().map(Book::getId).toList();
+    }
+
+    private static String describe(RangeQuery query) {
+        return query.getSort() + (query.isDescending() ? " desc" : " asc")
+                + " price " + query.getMinPriceCents() + ".." + query.getMaxPriceCents()
+                + " year " + query.getMinYear() + ".." + query.getMaxYear();
+    }
+}
@@ -0,0 +1,123 @@
+package com.bookstore.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * RowBitmap against java.util.BitSet on random row sets, from a few rows to
+ * nearly every row of a range spanning several chunks, so both container kinds
+ * and every pairing of them are exercised
+ */
+class RowBitmapTest {
+
+    private static final int ROWS = 300_000;
+    private static final double[] DENSITIES = {0.0005, 0.01, 0.05, 0.2, 0.9};
+
+    @Test
+    void matchesBitSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            BitSet x = randomRows(random);
+            BitSet y = randomRows(random);
+            RowBitmap bx = bitmap(x);
+            RowBitmap by = bitmap(y);
+            assertSame(x, bx, "build");
+
+            BitSet and = (BitSet) x.clone();
+            and.and(y);
+            BitSet or = (BitSet) x.clone();
+            or.or(y);
+            assertSame(and, bx.and(by), "and");
+            assertSame(or, bx.or(by), "or");
+            assertSame(x, bx.or(by).and(bx), "absorption");
+            assertEquals(and.cardinality(), bx.andCardinality(by), "andCardinality");
+            assertEquals(and.cardinality(), bx.dense().andCardinality(by), "dense andCardinality");
+            assertSame(x, bx.dense(), "dense");
+
+            int from = random.nextInt(ROWS);
+            int expected = x.nextSetBit(from);
+            assertEquals(expected < 0 ? -1 : expected, bx.next(from), "next from " + from);
+        }
+    }
+
+    @Test
+    void addsAndRemovesSingleRows() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            BitSet expected = randomRows(random);
+            RowBitmap bitmap = bitmap(expected);
+            RowBitmap original = bitmap;
+            BitSet originalRows = (BitSet) expected.clone();
+            for (int op = 0; op < 3000; op++) {
+                // Rows near a set row now and then, so chunks fill past and drop below the array limit
+                int row = random.nextBoolean() || expected.isEmpty()
+                        ? random.nextInt(ROWS)
+                        : Math.max(0, expected.nextSetBit(random.nextInt(ROWS)) + random.nextInt(64) - 32);
+                if (random.nextBoolean()) {
+                    expected.set(row);
+                    bitmap = bitmap.with(row);
+                } else {
+                    expected.clear(row);
+                    bitmap = bitmap.without(row);
+                }
+            }
+            assertSame(expected, bitmap, "with/without");
+            assertSame(expected, bitmap.or(RowBitmap.EMPTY), "with/without rebuilt");
+            // The bitmap it was derived from is unchanged
+            assertSame(originalRows, original, "original");
+        }
+    }
+
+    @Test
+    void emptySet() {
+        RowBitmap some = bitmap(BitSet.valueOf(new long[] {0b1011}));
+        assertEquals(0, RowBitmap.EMPTY.cardinality());
+        assertEquals(-1, RowBitmap.EMPTY.next(0));
+        assertEquals(0, RowBitmap.EMPTY.and(some).cardinality());
+        assertEquals(3, RowBitmap.EMPTY.or(some).cardinality());
+        assertEquals(0, some.andCardinality(RowBitmap.EMPTY));
+    }
+
+    /**
+     * A random run of rows within [0, ROWS) at one of several densities
+     */
+    private static BitSet randomRows(Random random) {
+        BitSet rows = new BitSet();
+        double density = DENSITIES[random.nextInt(DENSITIES.length)];
+        int start = random.nextInt(ROWS);
+        int end = start + random.nextInt(ROWS - start + 1);
+        for (int row = start; row < end; row++) {
+            if (random.nextDouble() < density) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private static RowBitmap bitmap(BitSet rows) {
+        RowBitmap.Builder builder = new RowBitmap.Builder();
+        rows.stream().forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * The bitmap holds exactly the rows of the set, by cardinality, next() and forEach()
+     */
+    private static void assertSame(BitSet expected, RowBitmap actual, String operation) {
+        assertEquals(expected.cardinality(), actual.cardinality(), operation + " cardinality");
+        List<Integer> visited = new ArrayList<>();
+        actual.forEach(visited::add);
+        assertEquals(expected.stream().boxed().toList(), visited, operation + " forEach");
+        List<Integer> stepped = new ArrayList<>();
+        for (int row = actual.next(0); row >= 0; row = actual.next(row + 1)) {
+            stepped.add(row);
+        }
+        assertEquals(visited, stepped, operation + " next");
+    }
+}
@@ -0,0 +1,37 @@
+package com.bookstore.monitoring;
+
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MockMvc expectations on the SQL statements counted by {@link SqlMonitoringFilter}
+ */
+public final class SqlBudgetMatchers {
+
+    private SqlBudgetMatchers() {
+    }
+
+    /**
+     * Fails unless the handler declares a {@link SqlBudget} and the request stayed within it
+     */
+    public static ResultMatcher withinSqlBudget() {
+        return result -> {
+            MockHttpServletResponse response = result.getResponse();
+            String budget = response.getHeader(SqlMonitoringFilter.BUDGET_HEADER);
+            assertNotNull(budget, "Handler of " + result.getRequest().getRequestURI() + " declares no @SqlBudget");
+            int statements = statements(response);
+            assertTrue(statements <= Integer.parseInt(budget),
+                    result.getRequest().getRequestURI() + " issued " + statements
+                            + " SQL statements, budget is " + budget);
+        };
+    }
+
+    private static int statements(MockHttpServletResponse response) {
+        String statements = response.getHeader(SqlMonitoringFilter.STATEMENTS_HEADER);
+        assertNotNull(statements, "No " + SqlMonitoringFilter.STATEMENTS_HEADER + " header; is SQL monitoring enabled?");
+        return Integer.parseInt(statements);
+    }
+}
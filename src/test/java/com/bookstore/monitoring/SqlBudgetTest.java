@@ -0,0 +1,48 @@
+package com.bookstore.monitoring;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.bookstore.monitoring.SqlBudgetMatchers.withinSqlBudget;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The read endpoints stay within their declared SQL budgets against the sample catalog,
+ * including statements run while the response body is serialized
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/api/books",
+            "/api/books/1",
+            "/api/books?ids=1,2,3",
+            "/api/books/1/ratings",
+            "/api/books/ratings/summary?ids=1,2",
+            "/api/books/ratings/recent",
+            "/api/books/search?q=the",
+            "/api/books/suggest?prefix=ge",
+            "/api/books/facets",
+            "/api/books/range?sort=rating",
+            "/api/books/top?by=rating",
+            "/",
+            "/simple"
+    })
+    void readEndpointsStayWithinTheirBudget(String uri) throws Exception {
+        mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andExpect(withinSqlBudget());
+    }
+}
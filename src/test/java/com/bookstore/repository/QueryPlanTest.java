@@ -0,0 +1,137 @@
+package com.bookstore.repository;
+
+import com.bookstore.model.Rating;
+import com.bookstore.monitoring.SqlRequestStats;
+import com.bookstore.monitoring.SqlStatementTracker;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every repository method that should be served by an index reads its table
+ * through that index.
+ *
+ * Each method is run once to capture the SQL Hibernate issues, which is then
+ * EXPLAINed with the same arguments, so a dropped or shadowed index fails the
+ * build rather than showing up as a slowdown. Runs against its own database,
+ * loaded with enough books and ratings that a table scan is never the cheaper
+ * plan. LIKE '%term%' lookups, full scans and the startup-only aggregate
+ * queries are left out, as no B-tree index can serve them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.datasource.url=jdbc:h2:mem:query-plans;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final int ROW_COUNT = 20_000;
+
+    // Clear of the ids the sample data takes from the sequences
+    private static final long FIRST_ID = 1_000_000;
+
+    private static final long BOOK_ID = FIRST_ID + ROW_COUNT / 2;
+
+    // How H2 notes the way a table is read: "/* PUBLIC.<index>: <condition> */" under FROM
+    private static final Pattern ACCESS_PATH = Pattern.compile("/\\* PUBLIC\\.[^*]*\\*/");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalDateTime now;
+
+    @BeforeAll
+    void insertRows() {
+        now = LocalDateTime.now();
+        List<Object[]> books = new ArrayList<>(ROW_COUNT);
+        List<Object[]> ratings = new ArrayList<>(ROW_COUNT);
+        Timestamp created = Timestamp.valueOf(now);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            long id = FIRST_ID + i;
+            books.add(new Object[] {id, "Title " + i, "Author " + (i % 1000), "isbn-" + i,
+                    9.99, i % 100, created, created});
+            // Ratings spread over the last ROW_COUNT minutes, by reviewers rating many books each
+            ratings.add(new Object[] {id, 1 + i % 5, "Reviewer " + (i % 4000), "reviewer " + (i % 4000),
+                    FIRST_ID + (i * 7L) % ROW_COUNT, Timestamp.valueOf(now.minusMinutes(i)), created});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO books (id, title, author, isbn, price, stock_quantity, " +
+                "created_at, updated_at, version, rating_sum, rating_count, one_star_count, two_star_count, " +
+                "three_star_count, four_star_count, five_star_count) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, 0, 0, 0, 0, 0)", books);
+        jdbcTemplate.batchUpdate("INSERT INTO ratings (id, rating, reviewer_name, reviewer_key, book_id, " +
+                "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)", ratings);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void ratingQueriesUseIndexes() {
+        String reviewerKey = Rating.reviewerKey("Reviewer 42");
+        LocalDateTime since = now.minusMinutes(30);
+
+        expectIndex("BOOK_ID = ?1", () -> ratingRepository.findByBookIdOrderByCreatedAtDesc(BOOK_ID), BOOK_ID);
+        expectIndex("BOOK_ID = ?1", () -> ratingRepository.countByBookId(BOOK_ID), BOOK_ID);
+        expectIndex("BOOK_ID = ?1", () -> ratingRepository.findAverageRatingByBookId(BOOK_ID), BOOK_ID);
+        expectIndex("UK_RATINGS_BOOK_REVIEWER",
+                () -> ratingRepository.existsByBookIdAndReviewerKey(BOOK_ID, reviewerKey), BOOK_ID, reviewerKey, 1);
+        expectIndex("REVIEWER_KEY = ?1", () -> ratingRepository.findByReviewerKey(reviewerKey), reviewerKey);
+        expectIndex("IDX_RATINGS_CREATED",
+                () -> ratingRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(10)), 10);
+        expectIndex("CREATED_AT >= ?1", () -> ratingRepository.findCreatedSince(since), Timestamp.valueOf(since));
+    }
+
+    @Test
+    void bookQueriesUseIndexes() {
+        expectIndex("STOCK_QUANTITY > ?1", () -> bookRepository.findByStockQuantityGreaterThan(98), 98);
+        expectIndex("ISBN = ?1", () -> bookRepository.findByIsbn("isbn-42"), "isbn-42");
+        expectIndex("ISBN = ?1", () -> bookRepository.existsByIsbn("isbn-42"), "isbn-42", 1);
+        expectIndex("ISBN IN(?1, ?2)",
+                () -> bookRepository.findExistingIsbns(List.of("isbn-42", "isbn-43")), "isbn-42", "isbn-43");
+        expectIndex("ID IN(?1, ?2)",
+                () -> bookRepository.findSummariesByIdIn(List.of(BOOK_ID, BOOK_ID + 1)), BOOK_ID, BOOK_ID + 1);
+        expectIndex("ID > ?1", () -> bookRepository.findSummariesAfter(BOOK_ID, Limit.of(50)), BOOK_ID, 50);
+        expectIndex("ID > ?2",
+                () -> bookRepository.findSummariesInStockAfter(0, BOOK_ID, Limit.of(50)), 0, BOOK_ID, 50);
+    }
+
+    /**
+     * Run a repository call, then EXPLAIN the one statement it issued with the
+     * given arguments and require the table to be read through an index whose
+     * plan comment (index name and lookup condition) contains the expected text
+     */
+    private void expectIndex(String expected, Runnable call, Object... arguments) {
+        SqlRequestStats stats = SqlStatementTracker.begin();
+        try {
+            call.run();
+        } finally {
+            SqlStatementTracker.end();
+        }
+        Set<String> statements = stats.getRepeatedStatements(1).keySet();
+        assertEquals(1, statements.size(), "Expected one statement, got " + statements);
+        String sql = statements.iterator().next();
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, arguments);
+        Matcher access = ACCESS_PATH.matcher(plan == null ? "" : plan);
+        assertTrue(access.find() && !access.group().contains("tableScan") && access.group().contains(expected),
+                "Expected " + sql + " to read an index on " + expected + ", but the plan is:\n" + plan);
+    }
+}
@@ -0,0 +1,246 @@
+package com.bookstore.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SuggestionIndex prefix matching, ranking and maintenance. The fixed cases run
+ * with the suggestions still queued and again after a merge, since queries read
+ * both; the random case checks long runs of changes against a plain map.
+ */
+class SuggestionIndexTest {
+
+    private static final String[] WORDS = {
+            "the", "great", "gatsby", "war", "peace", "old", "man", "sea", "orwell", "george",
+            "ann", "anna", "an", "gr", "grape", "wrath"
+    };
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void matchesPrefixOfAnyWord(boolean merged) {
+        SuggestionIndex index = new SuggestionIndex();
+        index.put(1, "The Great Gatsby", "F. Scott Fitzgerald", 3);
+        index.put(2, "Les Misérables", "Victor Hugo", 2);
+        index.put(3, "Agatha's Garden", "Someone Else", 1);
+        mergeIf(merged, index);
+
+        assertEquals(List.of("The Great Gatsby"), texts(index.suggest("gat", 10)));
+        assertEquals(List.of("The Great Gatsby"), texts(index.suggest("GREAT gats", 10)));
+        assertEquals(List.of("F. Scott Fitzgerald"), texts(index.suggest("fitz", 10)));
+        // Accents and punctuation are normalized away on both sides
+        assertEquals(List.of("Les Misérables"), texts(index.suggest("miser", 10)));
+        assertEquals(List.of("Agatha's Garden"), texts(index.suggest("agatha s", 10)));
+        // Only word starts match, and the words of the prefix must follow one another
+        assertEquals(List.of(), texts(index.suggest("atsby", 10)));
+        assertEquals(List.of(), texts(index.suggest("gatsby great", 10)));
+        assertEquals(List.of(), texts(index.suggest("  ", 10)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void ranksByRatingsThenFirstIndexed(boolean merged) {
+        SuggestionIndex index = new SuggestionIndex();
+        index.put(1, "Sea Wolf", "Jack London", 2);
+        index.put(2, "Sea Change", "Ann Author", 5);
+        index.put(3, "Sea Glass", "Other Author", 2);
+        index.put(4, "Sea Breeze", "Third Author", 2);
+        mergeIf(merged, index);
+
+        assertEquals(List.of("Sea Change", "Sea Wolf", "Sea Glass", "Sea Breeze"), texts(index.suggest("sea", 10)));
+        assertEquals(List.of(5, 2, 2, 2), counts(index.suggest("sea", 10)));
+
+        // The limit cuts the ranking, ties included
+        assertEquals(List.of("Sea Change", "Sea Wolf"), texts(index.suggest("sea", 2)));
+        assertEquals(List.of("Sea Change"), texts(index.suggest("sea", 1)));
+
+        index.addRatings(4, 4);
+        assertEquals(List.of("Sea Breeze", "Sea Change", "Sea Wolf"), texts(index.suggest("sea", 3)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void followsUpdatesAndDeletes(boolean merged) {
+        SuggestionIndex index = new SuggestionIndex();
+        index.put(1, "Animal Farm", "George Orwell", 4);
+        index.put(2, "Nineteen Eighty-Four", "George Orwell", 6);
+        index.put(3, "Animal Dreams", "Barbara Kingsolver", 1);
+        mergeIf(merged, index);
+
+        // An author's score is the sum over their books
+        assertEquals(List.of(10), counts(index.suggest("orwell", 10)));
+
+        // Renaming a book replaces its old title
+        index.put(1, "Burmese Days", "George Orwell", 4);
+        mergeIf(merged, index);
+        assertEquals(List.of("Animal Dreams"), texts(index.suggest("animal", 10)));
+        assertEquals(List.of("Burmese Days"), texts(index.suggest("burm", 10)));
+        assertEquals(List.of(10), counts(index.suggest("orwell", 10)));
+
+        // Deleting one of an author's books lowers the author's score; deleting the last removes the author
+        index.remove(2);
+        mergeIf(merged, index);
+        assertEquals(List.of(), texts(index.suggest("nineteen", 10)));
+        assertEquals(List.of(4), counts(index.suggest("orwell", 10)));
+        index.remove(1);
+        mergeIf(merged, index);
+        assertEquals(List.of(), texts(index.suggest("orwell", 10)));
+        assertEquals(List.of(), texts(index.suggest("burm", 10)));
+
+        // A removed suggestion can come back
+        index.put(5, "Animal Farm", "George Orwell", 2);
+        assertEquals(List.of("Animal Farm", "Animal Dreams"), texts(index.suggest("animal", 10)));
+        assertEquals(4, index.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void setsRatingsAndClears(boolean merged) {
+        SuggestionIndex index = new SuggestionIndex();
+        index.put(1, "Sea Wolf", "Jack London", 2);
+        index.put(2, "Sea Change", "Jack London", 5);
+        mergeIf(merged, index);
+
+        // Setting the same count again changes nothing, and unknown books are ignored
+        index.setRatings(1, 7);
+        index.setRatings(1, 7);
+        index.setRatings(3, 4);
+        assertEquals(List.of("Sea Wolf", "Sea Change"), texts(index.suggest("sea", 10)));
+        assertEquals(List.of(12), counts(index.suggest("london", 10)));
+
+        // A cleared index counts only what is put after it
+        index.clear();
+        assertEquals(0, index.size());
+        index.put(3, "Sea Glass", "Other Author", 1);
+        mergeIf(merged, index);
+        assertEquals(2, index.size());
+        assertEquals(List.of("Sea Glass"), texts(index.suggest("sea", 10)));
+    }
+
+    /**
+     * Long runs of puts, removals and rating changes, with merges now and then,
+     * against a map of every book: each suggestion returned must match the prefix
+     * with its current score, the scores must be the best ones, in order, and the
+     * size must count exactly the texts some book has
+     */
+    @Test
+    void matchesModel() {
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            SuggestionIndex index = new SuggestionIndex();
+            Map<Long, Object[]> books = new HashMap<>();
+            for (int op = 0; op < 2000; op++) {
+                int kind = random.nextInt(10);
+                long id = random.nextInt(150);
+                if (kind < 4) {
+                    String title = phrase(random);
+                    String author = phrase(random);
+                    int ratings = random.nextInt(5);
+                    index.put(id, title, author, ratings);
+                    books.put(id, new Object[] {title, author, ratings});
+                } else if (kind < 5) {
+                    index.remove(id);
+                    books.remove(id);
+                } else if (kind < 7) {
+                    int delta = random.nextBoolean() ? 1 : -1;
+                    index.addRatings(id, delta);
+                    if (books.containsKey(id)) {
+                        books.get(id)[2] = (int) books.get(id)[2] + delta;
+                    }
+                } else if (kind < 8) {
+                    if (random.nextInt(20) == 0) {
+                        index.merge();
+                    }
+                } else {
+                    String word = WORDS[random.nextInt(WORDS.length)];
+                    String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+                    if (random.nextInt(4) == 0) {
+                        prefix = WORDS[random.nextInt(WORDS.length)] + " " + prefix;
+                    }
+                    assertSuggestions(books, prefix, 1 + random.nextInt(6), index);
+                }
+            }
+        }
+    }
+
+    private static void assertSuggestions(Map<Long, Object[]> books, String prefix, int limit, SuggestionIndex index) {
+        Map<String, Integer> scores = new HashMap<>();
+        for (Object[] book : books.values()) {
+            scores.merge(Suggestion.Type.TITLE + ":" + key((String) book[0]), (int) book[2], Integer::sum);
+            scores.merge(Suggestion.Type.AUTHOR + ":" + key((String) book[1]), (int) book[2], Integer::sum);
+        }
+        String query = key(prefix);
+        List<Integer> expected = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+            if (hasWordStartingWith(entry.getKey().substring(entry.getKey().indexOf(':') + 1), query)) {
+                expected.add(Math.max(0, entry.getValue()));
+            }
+        }
+        expected.sort(Comparator.reverseOrder());
+
+        List<Suggestion> suggestions = index.suggest(prefix, limit);
+        Set<String> seen = new HashSet<>();
+        for (Suggestion suggestion : suggestions) {
+            String suggestionKey = suggestion.getType() + ":" + key(suggestion.getText());
+            assertTrue(seen.add(suggestionKey), "duplicate " + suggestionKey);
+            assertTrue(scores.containsKey(suggestionKey), "unknown " + suggestionKey + " for " + prefix);
+            assertEquals(Math.max(0, scores.get(suggestionKey)), suggestion.getRatingCount(), suggestionKey);
+            assertTrue(hasWordStartingWith(key(suggestion.getText()), query), suggestionKey + " for " + prefix);
+        }
+        assertEquals(expected.subList(0, Math.min(limit, expected.size())), counts(suggestions), prefix);
+        assertEquals(scores.size(), index.size());
+    }
+
+    /**
+     * One to three words, sometimes comma-separated or upper case, so different texts share keys
+     */
+    private static String phrase(Random random) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            if (phrase.length() > 0) {
+                phrase.append(random.nextBoolean() ? " " : ", ");
+            }
+            phrase.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return random.nextInt(5) == 0 ? phrase.toString().toUpperCase() : phrase.toString();
+    }
+
+    private static String key(String text) {
+        return String.join(" ", TextAnalyzer.tokenize(text));
+    }
+
+    private static boolean hasWordStartingWith(String key, String query) {
+        for (int i = 0; i < key.length(); i++) {
+            if ((i == 0 || key.charAt(i - 1) == ' ') && key.startsWith(query, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void mergeIf(boolean merged, SuggestionIndex index) {
+        if (merged) {
+            index.merge();
+        }
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).toList();
+    }
+
+    private static List<Integer> counts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getRatingCount).toList();
+    }
+}
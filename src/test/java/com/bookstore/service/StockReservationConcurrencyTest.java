@@ -0,0 +1,139 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+import com.bookstore.monitoring.SqlRequestStats;
+import com.bookstore.monitoring.SqlStatementTracker;
+import com.bookstore.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent stock changes on one book never oversell, and are combined into
+ * fewer transactions than requests; an entity update cannot write back stock
+ * that a reservation has changed since it was read. Runs against its own
+ * database, so the sample catalog of the other tests is left alone.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.datasource.url=jdbc:h2:mem:stock-reservations;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class StockReservationConcurrencyTest {
+
+    private static final int INITIAL_STOCK = 25;
+    private static final int THREADS = 64;
+    private static final int RESERVATIONS_PER_THREAD = 10;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Long bookId;
+
+    @BeforeEach
+    void createBook() {
+        Book book = new Book("Contended Stock", "Test Author", "978-0-00-000013-0", new BigDecimal("9.99"));
+        book.setStockQuantity(INITIAL_STOCK);
+        bookId = bookService.createBook(book).getId();
+    }
+
+    @AfterEach
+    void deleteBook() {
+        bookService.deleteBook(bookId);
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reservedUnits = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger lowestSeen = new AtomicInteger(INITIAL_STOCK);
+        // Each combined batch is one transaction that reads the books back with a single SELECT
+        AtomicInteger batches = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int quantity = 1 + t % 3;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    // A batch runs on the thread that drains it, so its statements land in that thread's stats
+                    SqlRequestStats stats = SqlStatementTracker.begin();
+                    try {
+                        for (int i = 0; i < RESERVATIONS_PER_THREAD; i++) {
+                            try {
+                                Book book = stockReservationService.reserve(bookId, quantity);
+                                reservedUnits.addAndGet(quantity);
+                                lowestSeen.accumulateAndGet(book.getStockQuantity(), Math::min);
+                            } catch (InsufficientStockException e) {
+                                refused.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        SqlStatementTracker.end();
+                    }
+                    stats.getRepeatedStatements(1).forEach((sql, count) -> {
+                        if (sql.toLowerCase(Locale.ROOT).startsWith("select")) {
+                            batches.addAndGet(count);
+                        }
+                    });
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int finalStock = bookRepository.findById(bookId).orElseThrow().getStockQuantity();
+        assertTrue(finalStock >= 0, "stock went negative: " + finalStock);
+        assertTrue(lowestSeen.get() >= 0, "a reservation saw negative stock: " + lowestSeen.get());
+        assertTrue(reservedUnits.get() <= INITIAL_STOCK,
+                "reserved " + reservedUnits.get() + " units of " + INITIAL_STOCK);
+        assertEquals(INITIAL_STOCK - reservedUnits.get(), finalStock);
+        // Far more was asked for than was in stock, so some requests must have been refused
+        assertTrue(refused.get() > 0);
+        int requests = THREADS * RESERVATIONS_PER_THREAD;
+        assertTrue(batches.get() > 0 && batches.get() < requests,
+                requests + " requests ran in " + batches.get() + " transactions, so none were combined");
+    }
+
+    @Test
+    void staleEntityUpdateDoesNotUndoReservation() {
+        Book stale = bookRepository.findById(bookId).orElseThrow();
+        stockReservationService.reserve(bookId, 5);
+
+        stale.setStockQuantity(INITIAL_STOCK);
+        assertThrows(OptimisticLockingFailureException.class, () -> bookRepository.save(stale));
+        assertEquals(INITIAL_STOCK - 5, bookRepository.findById(bookId).orElseThrow().getStockQuantity());
+
+        // A fresh read applies normally
+        assertEquals(40, bookService.updateStock(bookId, 40).getStockQuantity());
+    }
+}